@@ -0,0 +1,140 @@
+package com.cw.core.codec;
+
+import com.cw.core.kernel.TaskKernel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @ClassName : TaskCodec
+ * @Description :  任务记录和结果记录的编解码，Generator、Executor、Validator 和结果存储共用一份格式定义。
+ * 任务记录 13 字节：[id 8B][kernel 1B][x 2B][y 2B]，大端；
+ * 结果记录 45 字节：任务记录 + [sha256 32B]。
+ * 全部使用 ByteBuffer 按下标的绝对读写，堆内和堆外缓冲区都适用，JIT 会把它们编译成单条非对齐访存指令；
+ * 不改变 position，不分配对象，多个线程可以同时读写同一个缓冲区的不同记录。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public final class TaskCodec {
+
+    /** 每个 batch 的任务数，各组件必须一致 */
+    public static final int BATCH_SIZE = 2048;
+    public static final int TASK_BYTES = 8 + 1 + 2 + 2;
+    public static final int RESULT_BYTES = TASK_BYTES + TaskKernel.RESULT_BYTES;
+    public static final int TASK_BATCH_BYTES = BATCH_SIZE * TASK_BYTES;
+    public static final int RESULT_BATCH_BYTES = BATCH_SIZE * RESULT_BYTES;
+
+    private static final int KERNEL_OFFSET = 8;
+    private static final int X_OFFSET = 9;
+    private static final int Y_OFFSET = 11;
+
+    private TaskCodec() {
+    }
+
+    // ---------------- 任务记录 ----------------
+
+    public static void putTask(ByteBuffer buf, int index, long id, int kernel, int x, int y) {
+        putHeader(buf, index * TASK_BYTES, id, kernel, x, y);
+    }
+
+    public static long taskId(ByteBuffer buf, int index) {
+        return buf.getLong(index * TASK_BYTES);
+    }
+
+    public static int taskKernel(ByteBuffer buf, int index) {
+        return buf.get(index * TASK_BYTES + KERNEL_OFFSET) & 0xff;
+    }
+
+    public static int taskX(ByteBuffer buf, int index) {
+        return buf.getShort(index * TASK_BYTES + X_OFFSET) & 0xffff;
+    }
+
+    public static int taskY(ByteBuffer buf, int index) {
+        return buf.getShort(index * TASK_BYTES + Y_OFFSET) & 0xffff;
+    }
+
+    /**
+     * @Description: 把 buf 中前 count 个任务记录解码到列数组
+     **/
+    public static void decodeTasks(ByteBuffer buf, int count, long[] ids, byte[] kernels, int[] xs, int[] ys) {
+        for (int i = 0, pos = 0; i < count; i++, pos += TASK_BYTES) {
+            ids[i] = buf.getLong(pos);
+            kernels[i] = buf.get(pos + KERNEL_OFFSET);
+            xs[i] = buf.getShort(pos + X_OFFSET) & 0xffff;
+            ys[i] = buf.getShort(pos + Y_OFFSET) & 0xffff;
+        }
+    }
+
+    // ---------------- 结果记录 ----------------
+
+    /**
+     * @Description: 写结果记录的前 13 字节，sha256 由计算内核直接写到 resultHashOffset(index)
+     **/
+    public static void putResultHeader(ByteBuffer buf, int index, long id, int kernel, int x, int y) {
+        putHeader(buf, index * RESULT_BYTES, id, kernel, x, y);
+    }
+
+    /**
+     * @Description: 第 index 个结果记录中 sha256 的字节偏移（相对缓冲区起点）
+     **/
+    public static int resultHashOffset(int index) {
+        return index * RESULT_BYTES + TASK_BYTES;
+    }
+
+    public static long resultId(ByteBuffer buf, int index) {
+        return buf.getLong(index * RESULT_BYTES);
+    }
+
+    public static int resultKernel(ByteBuffer buf, int index) {
+        return buf.get(index * RESULT_BYTES + KERNEL_OFFSET) & 0xff;
+    }
+
+    public static int resultX(ByteBuffer buf, int index) {
+        return buf.getShort(index * RESULT_BYTES + X_OFFSET) & 0xffff;
+    }
+
+    public static int resultY(ByteBuffer buf, int index) {
+        return buf.getShort(index * RESULT_BYTES + Y_OFFSET) & 0xffff;
+    }
+
+    /**
+     * @Description: 把第 index 个结果的 sha256 拷贝到 out[off, off + 32)
+     **/
+    public static void resultHash(ByteBuffer buf, int index, byte[] out, int off) {
+        getBytes(buf, resultHashOffset(index), out, off, TaskKernel.RESULT_BYTES);
+    }
+
+    // ---------------- 内部 ----------------
+
+    private static void putHeader(ByteBuffer buf, int pos, long id, int kernel, int x, int y) {
+        buf.putLong(pos, id);
+        buf.put(pos + KERNEL_OFFSET, (byte) kernel);
+        buf.putShort(pos + X_OFFSET, (short) (x & 0xffff));  // 通过(short) (x & 0xFFFF)操作得到低16位
+        buf.putShort(pos + Y_OFFSET, (short) (y & 0xffff));
+    }
+
+    /**
+     * @Description: 按绝对位置批量读取。Java 8 的 ByteBuffer 没有绝对位置的批量 get：堆内直接拷贝数组，堆外逐字节读，都不分配对象
+     **/
+    public static void getBytes(ByteBuffer buf, int pos, byte[] out, int off, int len) {
+        if (buf.hasArray()) {
+            System.arraycopy(buf.array(), buf.arrayOffset() + pos, out, off, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                out[off + i] = buf.get(pos + i);
+            }
+        }
+    }
+
+    /**
+     * @Description: 按绝对位置批量写入，语义同 getBytes
+     **/
+    public static void putBytes(ByteBuffer buf, int pos, byte[] src, int off, int len) {
+        if (buf.hasArray()) {
+            System.arraycopy(src, off, buf.array(), buf.arrayOffset() + pos, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                buf.put(pos + i, src[off + i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.cw.core.kernel;
+
+import java.security.MessageDigest;
+
+/**
+ * @ClassName : HashChainKernel
+ * @Description :  哈希链：以 x、y 的 4 个字节为种子连续计算 depth 次 SHA-256，耗时与 depth 成正比。
+ * 内置两个深度：Depth100（id 1）和 Depth1000（id 2）。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public abstract class HashChainKernel extends Sha256Kernel {
+
+    private final int depth;
+
+    protected HashChainKernel(int depth) {
+        this.depth = depth;
+    }
+
+    @Override
+    public String name() {
+        return "chain-" + depth;
+    }
+
+    @Override
+    public void compute(int x, int y, byte[] out, int off) {
+        MessageDigest md = digest();
+        md.update((byte) (x >>> 8));
+        md.update((byte) x);
+        md.update((byte) (y >>> 8));
+        md.update((byte) y);
+        finish(md, out, off);
+        sha256Chain(md, out, off, depth - 1);
+    }
+
+    public static class Depth100 extends HashChainKernel {
+        public Depth100() {
+            super(100);
+        }
+
+        @Override
+        public int id() {
+            return 1;
+        }
+    }
+
+    public static class Depth1000 extends HashChainKernel {
+        public Depth1000() {
+            super(1000);
+        }
+
+        @Override
+        public int id() {
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.cw.core.kernel;
+
+import java.math.BigInteger;
+
+/**
+ * @ClassName : ModPowKernel
+ * @Description :  内核 3，大整数模幂：x^(y * 2^16 + x) mod (2^255 - 19) 的大端字节，再做一次 SHA-256。
+ * 耗时主要在 BigInteger 的乘法和取模，每个任务会分配若干临时对象，用于观察 GC 对流水线的影响。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class ModPowKernel extends Sha256Kernel {
+
+    private static final BigInteger MODULUS = BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19));
+
+    @Override
+    public int id() {
+        return 3;
+    }
+
+    @Override
+    public String name() {
+        return "modpow";
+    }
+
+    @Override
+    public void compute(int x, int y, byte[] out, int off) {
+        BigInteger exponent = BigInteger.valueOf(((long) y << 16) | x);
+        byte[] r = BigInteger.valueOf(x).modPow(exponent, MODULUS).toByteArray();
+        sha256(digest(), r, r.length, out, off);
+    }
+}
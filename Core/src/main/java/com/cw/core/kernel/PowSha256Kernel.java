@@ -0,0 +1,42 @@
+package com.cw.core.kernel;
+
+import java.security.MessageDigest;
+
+/**
+ * @ClassName : PowSha256Kernel
+ * @Description :  内核 0，原有的任务：x^y（long 溢出按原实现截断）的十进制字符串，再循环计算 SHA-256 10次
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class PowSha256Kernel extends Sha256Kernel {
+
+    public static final int ID = 0;
+
+    @Override
+    public int id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "pow-sha256";
+    }
+
+    @Override
+    public void compute(int x, int y, byte[] out, int off) {
+        MessageDigest md = digest();
+        byte[] s = String.valueOf(fastPow(x, y)).getBytes();
+        sha256(md, s, s.length, out, off);
+        sha256Chain(md, out, off, 9);
+    }
+
+    public static long fastPow(int x, int y) {
+        long res = 1;
+        while (y > 0) {
+            if ((y & 1) == 1) res *= x; // 二进制最右一位是否为1
+            x *= x;
+            y >>= 1; // 除以 2
+        }
+        return res;
+    }
+}
@@ -0,0 +1,55 @@
+package com.cw.core.kernel;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * @ClassName : Sha256Kernel
+ * @Description :  以 SHA-256 结尾的内核的基类，每个线程一个 MessageDigest，digest 直接写入调用方的数组，不产生中间数组
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public abstract class Sha256Kernel implements TaskKernel {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    protected static MessageDigest digest() {
+        return DIGEST.get();
+    }
+
+    /**
+     * @Description: 对 in[0, len) 做一次 SHA-256，结果写入 out[off, off + 32)
+     **/
+    protected static void sha256(MessageDigest md, byte[] in, int len, byte[] out, int off) {
+        md.update(in, 0, len);
+        finish(md, out, off);
+    }
+
+    /**
+     * @Description: 结束当前摘要（之前 update 的全部输入），结果写入 out[off, off + 32)
+     **/
+    protected static void finish(MessageDigest md, byte[] out, int off) {
+        try {
+            md.digest(out, off, RESULT_BYTES);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @Description: 在 out[off, off + 32) 上原地连续做 n 次 SHA-256
+     **/
+    protected static void sha256Chain(MessageDigest md, byte[] out, int off, int n) {
+        for (int i = 0; i < n; i++) {
+            md.update(out, off, RESULT_BYTES);
+            finish(md, out, off);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.cw.core.kernel;
+
+/**
+ * @ClassName : TaskKernel
+ * @Description :  计算内核 SPI。任务记录中的 kernel 字节决定由哪个内核计算，Executor 计算、Validator 校验都通过 TaskKernels 查找同一个实现。
+ * 新的内核实现这个接口，并在 META-INF/services/com.cw.core.kernel.TaskKernel 中登记即可，id 不能重复。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public interface TaskKernel {
+
+    /** 结果固定为 32 字节 */
+    int RESULT_BYTES = 32;
+
+    /**
+     * @Description: 内核 id，0 ~ 255，写在任务记录的 kernel 字节里
+     **/
+    int id();
+
+    /**
+     * @Description: 用于日志和监控上报的名字
+     **/
+    String name();
+
+    /**
+     * @Description: 计算一个任务，把 32 字节结果写到 out[off, off + 32)；同一个实例会被多个线程同时调用
+     **/
+    void compute(int x, int y, byte[] out, int off);
+}
@@ -0,0 +1,71 @@
+package com.cw.core.kernel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * @ClassName : TaskKernels
+ * @Description :  通过 ServiceLoader 加载所有 TaskKernel，按 id 建立数组索引，查找只是一次数组访问
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public final class TaskKernels {
+
+    public static final int MAX_KERNELS = 256;
+    private static final TaskKernel[] BY_ID = new TaskKernel[MAX_KERNELS];
+    private static final List<TaskKernel> ALL;
+
+    static {
+        List<TaskKernel> all = new ArrayList<>();
+        for (TaskKernel kernel : ServiceLoader.load(TaskKernel.class)) {
+            int id = kernel.id();
+            if (id < 0 || id >= MAX_KERNELS) {
+                throw new IllegalStateException("kernel id out of range: " + kernel.getClass().getName() + " " + id);
+            }
+            if (BY_ID[id] != null) {
+                throw new IllegalStateException("duplicate kernel id " + id + ": " + BY_ID[id].getClass().getName()
+                        + " and " + kernel.getClass().getName());
+            }
+            BY_ID[id] = kernel;
+            all.add(kernel);
+        }
+        all.sort((a, b) -> Integer.compare(a.id(), b.id()));
+        ALL = Collections.unmodifiableList(all);
+    }
+
+    private TaskKernels() {
+    }
+
+    /**
+     * @Description: 按 id 查找，未登记的 id 返回 null
+     **/
+    public static TaskKernel get(int id) {
+        return BY_ID[id & 0xff];
+    }
+
+    /**
+     * @Description: 按 id 查找，未登记的 id 抛出 IllegalArgumentException
+     **/
+    public static TaskKernel require(int id) {
+        TaskKernel kernel = get(id);
+        if (kernel == null) {
+            StringBuilder registered = new StringBuilder();
+            for (TaskKernel k : ALL) {
+                registered.append(' ').append(k.id()).append(':').append(k.name());
+            }
+            throw new IllegalArgumentException("unknown kernel id " + id + ", registered:" + registered);
+        }
+        return kernel;
+    }
+
+    public static String name(int id) {
+        TaskKernel kernel = get(id);
+        return kernel == null ? "kernel-" + (id & 0xff) : kernel.name();
+    }
+
+    public static List<TaskKernel> all() {
+        return ALL;
+    }
+}
@@ -0,0 +1,141 @@
+package com.cw.core.transport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * @ClassName : ResumableInputStream
+ * @Description :  可断点续传的 TCP 接收端，与 ResumableOutputStream 配对使用。
+ * 每个帧完整读入后才交给上层，所以重连时上层永远看不到半个batch；重复的帧按序号丢弃，
+ * 每收到 ACK_EVERY 个帧回一次确认。连接断开后重新 accept，握手时告诉发送端已经收到的最大序号。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public class ResumableInputStream extends InputStream {
+
+    private static final int ACK_EVERY = 8;
+
+    private final ServerSocket server;
+    private final byte[] frame;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream ackOut;
+    private long session;
+    private long lastSeq;
+    private int position;
+    private int limit;
+
+    public ResumableInputStream(ServerSocket server, int maxFrameBytes) throws IOException {
+        this.server = server;
+        this.frame = new byte[maxFrameBytes];
+        accept();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit) {
+            nextFrame();
+        }
+        return frame[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit) {
+            nextFrame();
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(frame, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    private void nextFrame() throws IOException {
+        for (; ; ) {
+            try {
+                long seq = in.readLong();
+                int len = in.readInt();
+                in.readInt();
+                if (len > frame.length) {
+                    throw new IOException("frame " + seq + " too large: " + len);
+                }
+                in.readFully(frame, 0, len);
+                if (seq <= lastSeq) {
+                    continue; // 重连后重放的重复帧
+                }
+                if (seq != lastSeq + 1) {
+                    log.warn("link on port {} lost frames {} to {}", server.getLocalPort(), lastSeq + 1, seq - 1);
+                }
+                lastSeq = seq;
+                position = 0;
+                limit = len;
+                if (seq % ACK_EVERY == 0) {
+                    ackOut.writeLong(seq);
+                    ackOut.flush();
+                }
+                return;
+            } catch (IOException e) {
+                if (server.isClosed()) {
+                    throw e;
+                }
+                log.warn("link on port {} broken after frame {}: {}", server.getLocalPort(), lastSeq, e.toString());
+                accept();
+            }
+        }
+    }
+
+    /**
+     * @Description: 等待发送端（重新）连接并握手
+     **/
+    private void accept() throws IOException {
+        for (; ; ) {
+            if (socket != null) {
+                socket.close();
+            }
+            socket = server.accept();
+            socket.setTcpNoDelay(true);
+            try {
+                in = new DataInputStream(socket.getInputStream());
+                ackOut = new DataOutputStream(socket.getOutputStream());
+                long peer = in.readLong();
+                if (peer != session) {
+                    if (session != 0) {
+                        log.info("link on port {} new sender session, restart from frame 1", server.getLocalPort());
+                    }
+                    session = peer;
+                    lastSeq = 0;
+                }
+                ackOut.writeLong(lastSeq);
+                ackOut.flush();
+                return;
+            } catch (IOException e) {
+                log.warn("link on port {} handshake failed: {}", server.getLocalPort(), e.toString());
+            }
+        }
+    }
+
+    /**
+     * @Description: 已经完整收到的最大帧序号
+     **/
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
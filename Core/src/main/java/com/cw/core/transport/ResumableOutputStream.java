@@ -0,0 +1,291 @@
+package com.cw.core.transport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @ClassName : ResumableOutputStream
+ * @Description :  可断点续传的 TCP 发送端。每次 write 是一个带序号的帧：[seq 8B][len 4B][保留 4B][payload]，
+ * 发出的帧先保存在有界的重放窗口里，直到接收端确认；窗口满时写入阻塞，相当于背压。
+ * 连接断开后自动重连，握手时接收端返回已经完整收到的最大序号，只重放之后的帧，
+ * 所以网络抖动只需要重放几毫秒的数据，不需要重启整个流水线。
+ * 握手时先发送本进程的 session id，接收端据此区分“同一个发送端重连”和“发送端重启”。
+ * 窗口的每个 slot 是预留了帧头的堆外缓冲区，write(ByteBuffer[], int, int) 把多个 batch 各自作为一帧放进窗口，
+ * 再用一次 gathering write 发出，和原始 tcp 链路一样一次系统调用发出一组 batch。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public class ResumableOutputStream extends OutputStream {
+
+    static final int HEADER_BYTES = 16;
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    private final String host;
+    private final int port;
+    private final long session = ThreadLocalRandom.current().nextLong();
+    private final int maxFrameBytes;
+    /** 重放窗口，slot 中预留了帧头，帧头和数据一起写出 */
+    private final ByteBuffer[] window;
+    /** 本次要写出的 slot，按序号排列，窗口绕回时也是连续的 */
+    private final ByteBuffer[] pending;
+    private final Object lock = new Object();
+    private final byte[] one = new byte[1];
+    private long lastSeq;
+    private volatile long acked;
+    private volatile boolean broken;
+    private volatile SocketChannel channel;
+
+    public ResumableOutputStream(String host, int port, int maxFrameBytes, int windowFrames) {
+        this.host = host;
+        this.port = port;
+        this.maxFrameBytes = maxFrameBytes;
+        this.window = new ByteBuffer[windowFrames];
+        for (int i = 0; i < windowFrames; i++) {
+            window[i] = ByteBuffer.allocateDirect(HEADER_BYTES + maxFrameBytes);
+        }
+        this.pending = new ByteBuffer[windowFrames];
+        reconnect();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        one[0] = (byte) b;
+        write(one, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, maxFrameBytes);
+            ByteBuffer slot = nextSlot(n);
+            slot.put(b, off, n);
+            send(1);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * @Description: srcs[offset, offset + length) 中每个缓冲区的剩余部分作为一帧，放进窗口后尽量用一次 gathering write 发出。
+     * 不移动各缓冲区的 position；返回实际的写系统调用次数，窗口不够放下整组时会分几次写出
+     **/
+    public int write(ByteBuffer[] srcs, int offset, int length) {
+        int writes = 0;
+        int queued = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer src = srcs[i];
+            int position = src.position();
+            while (src.hasRemaining()) {
+                // 窗口放满了未确认的帧，先把已经放进去的发出去，接收端才会确认
+                if (queued > 0 && lastSeq + 1 - acked > window.length) {
+                    writes += send(queued);
+                    queued = 0;
+                }
+                int n = Math.min(src.remaining(), maxFrameBytes);
+                int limit = src.limit();
+                src.limit(src.position() + n);
+                nextSlot(n).put(src);
+                src.limit(limit);
+                queued++;
+            }
+            src.position(position);
+        }
+        if (queued > 0) {
+            writes += send(queued);
+        }
+        return writes;
+    }
+
+    /**
+     * 等到窗口里有空位，写好下一帧的帧头，返回定位到数据区的 slot
+     */
+    private ByteBuffer nextSlot(int len) {
+        long seq = lastSeq + 1;
+        awaitWindow(seq);
+        ByteBuffer slot = window[(int) (seq % window.length)];
+        slot.clear();
+        slot.putLong(seq).putInt(len).putInt(0);
+        lastSeq = seq;
+        return slot;
+    }
+
+    /**
+     * 写出最后放进窗口的 frames 个帧，返回写系统调用次数；出错时重连，重连会重放所有未确认的帧
+     */
+    private int send(int frames) {
+        for (int i = 0; i < frames; i++) {
+            ByteBuffer slot = window[(int) ((lastSeq - frames + 1 + i) % window.length)];
+            slot.flip();
+            pending[i] = slot;
+        }
+        int writes = 0;
+        try {
+            if (broken) {
+                throw new IOException("ack channel closed");
+            }
+            writes = writeFully(channel, pending, frames);
+        } catch (IOException e) {
+            log.warn("link {}:{} broken at frame {}: {}", host, port, lastSeq, e.toString());
+            reconnect();
+        }
+        return writes;
+    }
+
+    private static int writeFully(SocketChannel channel, ByteBuffer[] frames, int n) throws IOException {
+        long remaining = 0;
+        for (int i = 0; i < n; i++) {
+            remaining += frames[i].remaining();
+        }
+        int writes = 0;
+        while (remaining > 0) {
+            remaining -= channel.write(frames, 0, n);
+            writes++;
+        }
+        return writes;
+    }
+
+    /**
+     * 窗口里最多保留 window.length 个未确认的帧
+     */
+    private void awaitWindow(long seq) {
+        while (seq - acked > window.length) {
+            if (broken) {
+                reconnect();
+                continue;
+            }
+            synchronized (lock) {
+                if (seq - acked > window.length && !broken) {
+                    try {
+                        lock.wait(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @Description: 重连直到成功，然后从接收端确认的序号之后开始重放窗口中的帧
+     **/
+    private void reconnect() {
+        long start = System.currentTimeMillis();
+        long backoff = 10;
+        for (; ; ) {
+            closeChannel();
+            SocketChannel ch = null;
+            try {
+                // 数据都用 channel 写，socket 的输入流只给确认读线程用；写不经过 socket 的输出流，不会和阻塞中的读互相等待
+                ch = SocketChannel.open();
+                ch.socket().setTcpNoDelay(true);
+                ch.socket().connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                ByteBuffer hello = ByteBuffer.allocate(8);
+                hello.putLong(session).flip();
+                while (hello.hasRemaining()) {
+                    ch.write(hello);
+                }
+                DataInputStream in = new DataInputStream(ch.socket().getInputStream());
+                long received = in.readLong();
+                channel = ch;
+                broken = false;
+                onAck(received);
+                startAckReader(ch, in);
+                long from = Math.max(received, lastSeq - window.length) + 1;
+                for (long seq = from; seq <= lastSeq; seq++) {
+                    ByteBuffer slot = window[(int) (seq % window.length)];
+                    // 帧头里的长度就是 slot 中已写入的数据长度
+                    slot.limit(HEADER_BYTES + slot.getInt(8)).position(0);
+                    pending[(int) (seq - from)] = slot;
+                }
+                writeFully(ch, pending, (int) (lastSeq - from + 1));
+                if (lastSeq > 0) {
+                    log.info("link {}:{} resumed after {} ms, replayed {} frames from {}",
+                            host, port, System.currentTimeMillis() - start, lastSeq - from + 1, from);
+                }
+                return;
+            } catch (IOException e) {
+                if (ch != null && channel != ch) {
+                    try {
+                        ch.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void startAckReader(SocketChannel ch, DataInputStream in) {
+        Thread reader = new Thread(() -> {
+            try {
+                for (; ; ) {
+                    onAck(in.readLong());
+                }
+            } catch (IOException e) {
+                // 旧连接的读线程退出时不能影响新连接
+                if (channel == ch) {
+                    broken = true;
+                }
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            }
+        }, "link-ack-" + port);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void onAck(long seq) {
+        if (seq > acked) {
+            acked = seq;
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * @Description: 每帧都直接写入 channel，没有需要 flush 的缓冲
+     **/
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * @Description: 已经被接收端确认的最大帧序号
+     **/
+    public long getAcked() {
+        return acked;
+    }
+
+    @Override
+    public void close() {
+        closeChannel();
+    }
+}
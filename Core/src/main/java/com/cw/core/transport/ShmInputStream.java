@@ -0,0 +1,38 @@
+package com.cw.core.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @ClassName : ShmInputStream
+ * @Description :  把 ShmRing 的消费端包装成 InputStream，接收方仍然用 DataInputStream.readFully 读取完整的batch
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class ShmInputStream extends InputStream {
+
+    private final ShmRing ring;
+    private final byte[] one = new byte[1];
+
+    public ShmInputStream(ShmRing ring) {
+        this.ring = ring;
+    }
+
+    @Override
+    public int read() {
+        return ring.read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        return ring.read(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        ring.close();
+    }
+}
@@ -0,0 +1,58 @@
+package com.cw.core.transport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * @ClassName : ShmOutputStream
+ * @Description :  把 ShmRing 的生产端包装成 OutputStream，发送方仍然用 DataOutputStream 按batch写入。
+ * 消费者重新创建了环时重新连接，并把这次调用的数据整个重写到新环上，新消费者读到的仍然从batch边界开始；
+ * 留在旧环里没有被读取的数据会丢失，日志中给出字节数。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public class ShmOutputStream extends OutputStream {
+
+    private ShmRing ring;
+    private final byte[] one = new byte[1];
+
+    public ShmOutputStream(ShmRing ring) {
+        this.ring = ring;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        one[0] = (byte) b;
+        write(one, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (!ring.write(b, off, len)) {
+            reattach();
+        }
+    }
+
+    public void write(ByteBuffer src) throws IOException {
+        int position = src.position();
+        while (!ring.write(src)) {
+            src.position(position);
+            reattach();
+        }
+    }
+
+    private void reattach() throws IOException {
+        log.warn("shm ring {} was re-created by its consumer, {} unread bytes in the old ring are lost, attaching to the new ring",
+                ring.getPath(), ring.unread());
+        ring = ShmRing.attach(ring.getPath());
+    }
+
+    @Override
+    public void close() {
+        ring.closeProducer();
+    }
+}
@@ -0,0 +1,418 @@
+package com.cw.core.transport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @ClassName : ShmRing
+ * @Description :  基于 /dev/shm 内存映射文件的单生产者/单消费者环形缓冲区，用于同一台机器上的进程间传输batch。
+ * 文件头布局（每个指针独占一个缓存行，避免伪共享）：
+ * 0    magic，消费者初始化完成后写入，生产者据此判断可以连接
+ * 8    capacity
+ * 16   生产者关闭标志
+ * 24   消费者进程的 pid
+ * 32   epoch，消费者每次创建时随机生成
+ * 64   tail，生产者已写入的总字节数
+ * 128  head，消费者已读取的总字节数
+ * 4096 数据区，容量为2的幂
+ * 消费者被 kill 后文件会留在 /dev/shm，magic 仍然有效。生产者连接时检查消费者进程是否还活着，
+ * 并在映射前后核对文件身份和 epoch，不会连到上一次运行留下的环；消费者重新创建时先清掉旧文件的 magic 再删除，
+ * 已经连在旧环上的生产者下一次写入时发现 magic 失效，write 返回 false，由调用方重新连接。
+ * 文件头记录的消费者进程还活着时，create 直接失败，误启动的第二个消费者不会接管正在运行的链路。
+ * 映射内存上的读写没有 volatile 语义，Java 8 也没有 VarHandle 的屏障，这里借 volatile 字段排序：写完数据后写一次 volatile 字段再发布指针，
+ * 读到指针后读一次 volatile 字段再读数据。这依赖 HotSpot 不把普通读写跨过 volatile 读写重排，以及 x86 上写与写、读与读本来就不重排。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public final class ShmRing implements Closeable {
+
+    private static final long MAGIC = 0x43572D52494E4731L; // "CW-RING1"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int CLOSED_OFFSET = 16;
+    private static final int PID_OFFSET = 24;
+    private static final int EPOCH_OFFSET = 32;
+    private static final int TAIL_OFFSET = 64;
+    private static final int HEAD_OFFSET = 128;
+    private static final int HEADER_BYTES = 4096;
+    private static final int SPIN_TRIES = 1000;
+    private final Path path;
+    private final MappedByteBuffer mapped;
+    /** 数据区视图，只被本端一个线程使用，所以可以放心修改 position */
+    private final ByteBuffer data;
+    private final int capacity;
+    private final int mask;
+    private final long epoch;
+    /** 本端指针的本地副本，以及对端指针的缓存，减少对共享缓存行的读取 */
+    private long head;
+    private long tail;
+    private long cachedPeer;
+    /** 只用来给映射内存上的读写排序，见类注释 */
+    private volatile long fence;
+    /** 同上，用于创建、连接、作废这些不在热路径上的静态方法 */
+    private static volatile long setupFence;
+
+    private ShmRing(Path path, MappedByteBuffer mapped, int capacity, long epoch) {
+        this.path = path;
+        this.epoch = epoch;
+        this.mapped = mapped;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        mapped.position(HEADER_BYTES);
+        this.data = mapped.slice();
+        mapped.position(0);
+    }
+
+    /**
+     * @Description: 消费者（接收端）创建环形缓冲区，旧文件先作废再删除；旧文件属于另一个还活着的消费者时抛出 IOException
+     **/
+    public static ShmRing create(Path path, int capacity) throws IOException {
+        return create(path, capacity, currentPid());
+    }
+
+    static ShmRing create(Path path, int capacity, long pid) throws IOException {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("ring capacity must be a power of two: " + capacity);
+        }
+        long owner = liveOwner(path, pid);
+        if (owner != 0) {
+            throw new IOException("shm ring " + path + " is in use by consumer pid " + owner + ", refusing to take it over");
+        }
+        retire(path);
+        Files.deleteIfExists(path);
+        long epoch = ThreadLocalRandom.current().nextLong() | 1;
+        MappedByteBuffer mapped = map(path, HEADER_BYTES + capacity);
+        mapped.putLong(CAPACITY_OFFSET, capacity);
+        mapped.putLong(CLOSED_OFFSET, 0);
+        mapped.putLong(PID_OFFSET, pid);
+        mapped.putLong(EPOCH_OFFSET, epoch);
+        mapped.putLong(TAIL_OFFSET, 0);
+        mapped.putLong(HEAD_OFFSET, 0);
+        releaseSetup();
+        mapped.putLong(MAGIC_OFFSET, MAGIC);
+        return new ShmRing(path, mapped, capacity, epoch);
+    }
+
+    /**
+     * @Description: 生产者（发送端）连接到接收端创建的环形缓冲区，接收端还没准备好、或者文件是已退出的消费者留下的时一直等待
+     **/
+    public static ShmRing attach(Path path) throws IOException {
+        boolean logged = false;
+        for (; ; ) {
+            Object key = fileKey(path);
+            // 先只映射文件头做检查，等待期间不会反复映射整个数据区
+            MappedByteBuffer header = key == null ? null : mapExisting(path, HEADER_BYTES);
+            if (header != null && header.getLong(MAGIC_OFFSET) == MAGIC) {
+                acquireSetup();
+                long pid = header.getLong(PID_OFFSET);
+                if (isAlive(pid, true)) {
+                    MappedByteBuffer mapped = mapExisting(path, Long.MAX_VALUE);
+                    long epoch = header.getLong(EPOCH_OFFSET);
+                    // 映射的确实是路径上的这个文件，并且检查期间消费者没有重新创建
+                    if (mapped != null && key.equals(fileKey(path)) && mapped.getLong(MAGIC_OFFSET) == MAGIC && mapped.getLong(EPOCH_OFFSET) == epoch) {
+                        acquireSetup();
+                        ShmRing ring = new ShmRing(path, mapped, (int) mapped.getLong(CAPACITY_OFFSET), epoch);
+                        ring.tail = mapped.getLong(TAIL_OFFSET);
+                        ring.cachedPeer = mapped.getLong(HEAD_OFFSET);
+                        return ring;
+                    }
+                } else if (!logged) {
+                    log.warn("shm ring {} was left by consumer pid {} which is gone, waiting for a new consumer", path, pid);
+                    logged = true;
+                }
+            }
+            LockSupport.parkNanos(100_000_000L);
+        }
+    }
+
+    /**
+     * @Description: 生产者用：消费者是否已经重新创建或关闭了这个环，此后写入的数据不会再被读取
+     **/
+    public boolean isReplaced() {
+        return mapped.getLong(MAGIC_OFFSET) != MAGIC || mapped.getLong(EPOCH_OFFSET) != epoch;
+    }
+
+    /**
+     * 旧文件有效、并且记录的是另一个确定还活着的进程时返回它的 pid，否则返回 0。
+     * 同一个进程重新创建、或者无法确认进程是否存在时允许接管
+     */
+    private static long liveOwner(Path path, long pid) throws IOException {
+        MappedByteBuffer old = mapExisting(path, HEADER_BYTES);
+        if (old == null || old.getLong(MAGIC_OFFSET) != MAGIC) {
+            return 0;
+        }
+        long owner = old.getLong(PID_OFFSET);
+        return owner != pid && isAlive(owner, false) ? owner : 0;
+    }
+
+    /**
+     * 清掉旧文件的 magic，连在旧文件上的生产者据此发现环已作废
+     */
+    private static void retire(Path path) throws IOException {
+        MappedByteBuffer old = mapExisting(path, HEADER_BYTES);
+        if (old != null) {
+            old.putLong(MAGIC_OFFSET, 0);
+            releaseSetup();
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() < size) {
+                file.setLength(size);
+            }
+            // 映射在 channel 关闭后仍然有效
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * 映射已经存在的文件的前 maxBytes 字节，不创建也不改变大小；文件不存在或者还没有初始化到数据区时返回 null
+     */
+    private static MappedByteBuffer mapExisting(Path path, long maxBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            return size > HEADER_BYTES ? channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(size, maxBytes)) : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static Object fileKey(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 通过 /proc 判断进程是否存在；没有 /proc 或 pid 未知时返回 unknown
+     */
+    private static boolean isAlive(long pid, boolean unknown) {
+        if (pid <= 0 || !Files.isDirectory(Paths.get("/proc/self"))) {
+            return unknown;
+        }
+        return Files.isDirectory(Paths.get("/proc", Long.toString(pid)));
+    }
+
+    private static long currentPid() {
+        // Java 8 没有 ProcessHandle，RuntimeMXBean 的名字形如 pid@hostname
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        try {
+            return Long.parseLong(name.substring(0, name.indexOf('@')));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @Description: 生产者写入，空间不足时等待消费者；环已被消费者作废时返回 false，没写完的部分不再写入
+     **/
+    public boolean write(byte[] src, int off, int len) {
+        if (isReplaced()) {
+            return false;
+        }
+        while (len > 0) {
+            int n = awaitFree(len);
+            if (n < 0) {
+                return false;
+            }
+            int index = (int) (tail & mask);
+            int first = Math.min(n, capacity - index);
+            data.position(index);
+            data.put(src, off, first);
+            if (first < n) {
+                data.position(0);
+                data.put(src, off + first, n - first);
+            }
+            publishTail(n);
+            off += n;
+            len -= n;
+        }
+        return true;
+    }
+
+    /**
+     * @Description: 生产者直接从另一个 ByteBuffer（例如映射的文件）写入，省去一次中间拷贝；返回值同 write(byte[], int, int)
+     **/
+    public boolean write(ByteBuffer src) {
+        if (isReplaced()) {
+            return false;
+        }
+        while (src.hasRemaining()) {
+            int n = awaitFree(src.remaining());
+            if (n < 0) {
+                return false;
+            }
+            int index = (int) (tail & mask);
+            int first = Math.min(n, capacity - index);
+            int limit = src.limit();
+            src.limit(src.position() + first);
+            data.position(index);
+            data.put(src);
+            if (first < n) {
+                src.limit(src.position() + n - first);
+                data.position(0);
+                data.put(src);
+            }
+            src.limit(limit);
+            publishTail(n);
+        }
+        return true;
+    }
+
+    /**
+     * @Description: 消费者读取，至少读到1个字节才返回；生产者已关闭且数据读完时返回-1
+     **/
+    public int read(byte[] dst, int off, int len) {
+        int n = awaitAvailable(len);
+        if (n < 0) {
+            return -1;
+        }
+        int index = (int) (head & mask);
+        int first = Math.min(n, capacity - index);
+        data.position(index);
+        data.get(dst, off, first);
+        if (first < n) {
+            data.position(0);
+            data.get(dst, off + first, n - first);
+        }
+        // 数据读完之后才能让出空间
+        release();
+        head += n;
+        mapped.putLong(HEAD_OFFSET, head);
+        return n;
+    }
+
+    /**
+     * 等待空闲空间；已经进入 park 阶段还等不到时检查环是否被作废，作废返回 -1
+     */
+    private int awaitFree(int len) {
+        int tries = 0;
+        long free;
+        while ((free = capacity - (tail - cachedPeer)) <= 0) {
+            idle(++tries);
+            if (tries > SPIN_TRIES * 2 && isReplaced()) {
+                return -1;
+            }
+            cachedPeer = mapped.getLong(HEAD_OFFSET);
+        }
+        // 读到 head 之后才能覆盖已经读过的空间
+        acquire();
+        return (int) Math.min(len, free);
+    }
+
+    private int awaitAvailable(int len) {
+        int tries = 0;
+        long available;
+        while ((available = cachedPeer - head) <= 0) {
+            cachedPeer = mapped.getLong(TAIL_OFFSET);
+            if (cachedPeer == head) {
+                if (mapped.getLong(CLOSED_OFFSET) != 0) {
+                    acquire();
+                    if (mapped.getLong(TAIL_OFFSET) == head) {
+                        return -1;
+                    }
+                }
+                idle(++tries);
+            }
+        }
+        // 读到 tail 之后才能读数据
+        acquire();
+        return (int) Math.min(len, available);
+    }
+
+    private void publishTail(int n) {
+        // 数据写完之后才能发布 tail
+        release();
+        tail += n;
+        mapped.putLong(TAIL_OFFSET, tail);
+    }
+
+    /**
+     * volatile 写：之前对映射内存的读写都在它之前完成
+     */
+    private void release() {
+        fence = tail;
+    }
+
+    /**
+     * volatile 读：之后对映射内存的读写都在它之后进行
+     */
+    private long acquire() {
+        return fence;
+    }
+
+    private static void releaseSetup() {
+        setupFence++;
+    }
+
+    private static long acquireSetup() {
+        return setupFence;
+    }
+
+    /**
+     * 先自旋，再让出CPU，最后短暂park，兼顾延迟和空闲时的CPU占用
+     */
+    private static void idle(int tries) {
+        if (tries < SPIN_TRIES) {
+            return;
+        }
+        if (tries < SPIN_TRIES * 2) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000L);
+        }
+    }
+
+    /**
+     * @Description: 生产者关闭时写入关闭标志，消费者读完剩余数据后得到-1；消费者关闭时作废并删除文件
+     **/
+    public void closeProducer() {
+        release();
+        mapped.putLong(CLOSED_OFFSET, 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapped.putLong(MAGIC_OFFSET, 0);
+        release();
+        // 路径上可能已经是新消费者创建的文件，只删除自己的
+        if (!isReplacedOnDisk()) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private boolean isReplacedOnDisk() throws IOException {
+        MappedByteBuffer current = mapExisting(path, HEADER_BYTES);
+        return current == null || current.getLong(EPOCH_OFFSET) != epoch;
+    }
+
+    /**
+     * @Description: 生产者已写入、消费者还没读取的字节数
+     **/
+    public long unread() {
+        return tail - mapped.getLong(HEAD_OFFSET);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
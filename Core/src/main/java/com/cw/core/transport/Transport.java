@@ -0,0 +1,125 @@
+package com.cw.core.transport;
+
+import com.cw.core.util.Utils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * @ClassName : Transport
+ * @Description :  组件之间每条链路的传输方式。
+ * TCP 为原始字节流，出错即断开，但发送端可以使用 transferTo 零拷贝和 gathering write（默认）；
+ * RESUMABLE 为带序号和确认的 TCP，断线后自动重连并从最后确认的batch继续，需要两端显式指定；
+ * SHM 走 /dev/shm 下的内存映射环形缓冲区，只适用于部署在同一台机器上的上下游。
+ * 链路两端必须选择相同的方式，SHM 文件名由接收端端口决定，因此上下游不需要额外约定路径。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public enum Transport {
+    TCP(), RESUMABLE(), SHM();
+
+    /** 环形缓冲区大小，必须是2的幂 */
+    public static final int SHM_SIZE = Integer.getInteger("link.shm.size", 8 << 20);
+    /** 可续传链路的重放窗口帧数 */
+    public static final int RESUME_WINDOW = Integer.getInteger("link.resume.window", 64);
+    private static final long MAX_CONNECT_BACKOFF_MILLIS = 1000;
+    private static final String SHM_DIR = System.getProperty("link.shm.dir",
+            new File("/dev/shm").isDirectory() ? "/dev/shm" : System.getProperty("java.io.tmpdir"));
+
+    /**
+     * @Description: 从系统属性读取链路的传输方式，例如 -Dlink.out=shm，默认 tcp
+     **/
+    public static Transport of(String property) {
+        return valueOf(System.getProperty(property, "tcp").toUpperCase());
+    }
+
+    /**
+     * @Description: 发送端建立链路，maxBatchBytes 为单次写入的最大字节数
+     **/
+    public OutputStream connect(String host, int port, int maxBatchBytes) throws IOException {
+        switch (this) {
+            case SHM:
+                return openShmOutput(port);
+            case RESUMABLE:
+                return new ResumableOutputStream(host, port, maxBatchBytes, RESUME_WINDOW);
+            default:
+                return connectChannel(host, port).socket().getOutputStream();
+        }
+    }
+
+    /**
+     * @Description: 建立阻塞模式的 TCP 连接。接收端预热完成后才开始监听，所以连接被拒绝时按退避重试，直到对方开始监听
+     **/
+    public static SocketChannel connectChannel(String host, int port) throws IOException {
+        long backoff = 10;
+        long start = System.currentTimeMillis();
+        for (; ; ) {
+            try {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+                if (System.currentTimeMillis() - start > MAX_CONNECT_BACKOFF_MILLIS) {
+                    log.info("connected to {}:{} after waiting {} ms for it to listen", host, port, System.currentTimeMillis() - start);
+                }
+                return channel;
+            } catch (ConnectException e) {
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("connecting to " + host + ":" + port);
+                }
+                backoff = Math.min(backoff * 2, MAX_CONNECT_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * @Description: 接收端建立链路，阻塞到上游连上为止
+     **/
+    public InputStream accept(int port, int maxBatchBytes) throws IOException {
+        switch (this) {
+            case SHM:
+                return openShmInput(port);
+            case RESUMABLE:
+                return new ResumableInputStream(new ServerSocket(port), maxBatchBytes);
+            default:
+                try (ServerSocket server = new ServerSocket(port)) {
+                    return server.accept().getInputStream();
+                }
+        }
+    }
+
+    /**
+     * @Description: 接收端端口对应的共享内存文件
+     **/
+    public static Path shmPath(int port) {
+        return Paths.get(SHM_DIR, "cw-" + port + ".ring");
+    }
+
+    /**
+     * @Description: 接收端创建共享内存链路，相当于 TCP 的 listen + accept
+     **/
+    public static ShmInputStream openShmInput(int port) throws IOException {
+        ShmRing ring = ShmRing.create(shmPath(port), SHM_SIZE);
+        // 正常退出时作废并删除文件；被 kill -9 时文件会留下，由生产者检查消费者进程是否存在
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> Utils.close(ring), "shm-ring-cleanup"));
+        return new ShmInputStream(ring);
+    }
+
+    /**
+     * @Description: 发送端连接共享内存链路，接收端未创建时阻塞等待，相当于 TCP 的 connect
+     **/
+    public static ShmOutputStream openShmOutput(int port) throws IOException {
+        return new ShmOutputStream(ShmRing.attach(shmPath(port)));
+    }
+}
@@ -1,18 +1,25 @@
-package com.cw.utils;
+package com.cw.core.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.Closeable;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
-public class Utils {
+/**
+ * @ClassName : Utils
+ * @Description :  各模块共用的工具方法，原来每个模块各有一份 com.cw.utils.Utils，已合并到这里。
+ * 任务的编解码见 TaskCodec，计算的参考实现见 com.cw.core.kernel。
+ * @Author : Ethan Chan
+ * @Date: 2026/10/19
+ */
+public final class Utils {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Utils() {
+    }
 
-    static final String HEX = "0123456789abcdef";
     public static void close(Closeable... targets) {
         // Closeable是IO流中接口，"..."可变参数
         // IO流和Socket都实现了Closeable接口，可以直接用
@@ -28,23 +35,6 @@ public class Utils {
         }
     }
 
-    public static byte[] task2Bytes(long id, int x, int y, byte[] sha256) {
-        byte[] bytes = new byte[8 + 2 + 2 + 32];
-        for (int i = 0; i < 8; i++) {
-            bytes[7 - i] = (byte) ((id >> (i * 8)) & 0xff);
-        }
-        for (int i = 0; i < 2; i++) {
-            int offset = (2 - 1 - i) * 8;
-            bytes[i + 8] = (byte) ((x >>> offset) & 0xff);
-        }
-        for (int i = 0; i < 2; i++) {
-            int offset = (2 - 1 - i) * 8;
-            bytes[i + 10] = (byte) ((y >>> offset) & 0xff);
-        }
-        System.arraycopy(sha256, 0, bytes, 12, 32);
-        return bytes;
-    }
-
     public static void send(DatagramSocket socket, String toIP, int toPort, String msg) throws IOException {
         byte[] datas = msg.getBytes();
         //参数：数据，数据开始点，数据长度，发送的地址
@@ -53,6 +43,19 @@ public class Utils {
         socket.send(packet);
     }
 
+    /**
+     * @Description: 字节数组转小写十六进制字符串，用于日志中打印 sha256
+     **/
+    public static String getRes(byte[] bytes) {
+        char[] res = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            // 高四位和低四位分别查表
+            res[2 * i] = HEX[(bytes[i] >> 4) & 0x0f];
+            res[2 * i + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(res);
+    }
+
     public static <T extends Enum<T>> boolean enumContains(Class<T> enumerator, String value) {
         for (T c : enumerator.getEnumConstants()) {
             if (c.name().equals(value)) {
@@ -61,4 +64,4 @@ public class Utils {
         }
         return false;
     }
-}
\ No newline at end of file
+}
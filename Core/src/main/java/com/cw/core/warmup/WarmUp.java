@@ -0,0 +1,203 @@
+package com.cw.core.warmup;
+
+import com.cw.core.codec.TaskCodec;
+import com.cw.core.kernel.TaskKernel;
+import com.cw.core.kernel.TaskKernels;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.OutputStream;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName : WarmUp
+ * @Description :  服务开始监听之前的 JIT 预热。用合成的 batch 反复执行一轮真实的处理路径（解码、计算内核、发送），
+ * 直到最近几轮的耗时波动在容差以内、并且这几轮里 JIT 编译几乎不再占用时间，才认为编译后的代码已经稳定，
+ * 这时服务再开始监听上游并向监控上报 READY，上线后的前几分钟不再跑在解释执行或 C1 代码上。
+ * 计时的一轮只用默认内核，与 Generator 默认的内核配比相同；其余内核单价差几十倍，混进计时的一轮会让耗时几乎全部落在
+ * 线上默认不跑的路径上，所以它们放在每轮之前不计时的附加处理中编译。
+ * -Dwarmup.enabled=false 关闭预热，-Dwarmup.max.seconds 为预热时长上限，到达上限时不管是否稳定都结束。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public final class WarmUp {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("warmup.enabled", "true"));
+    private static final long MAX_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("warmup.max.seconds", 30));
+    private static final int MIN_ROUNDS = Integer.getInteger("warmup.min.rounds", 20);
+    /** 连续这么多轮满足条件才算稳定 */
+    private static final int STABLE_ROUNDS = Integer.getInteger("warmup.stable.rounds", 5);
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("warmup.tolerance", "0.1"));
+    /** 附加 batch 中每隔这么多个任务换一个非默认内核，默认内核之外的内核也能被编译 */
+    private static final int OTHER_KERNEL_STRIDE = 16;
+    private static final CompilationMXBean JIT = ManagementFactory.getCompilationMXBean();
+    private static final boolean JIT_TIME = JIT != null && JIT.isCompilationTimeMonitoringSupported();
+
+    private WarmUp() {
+    }
+
+    /**
+     * @Description: 反复执行 round 直到稳定或超时，返回预热结果；round 抛出的异常直接向上抛出
+     **/
+    public static Result run(String name, Runnable round) {
+        return run(name, () -> {
+        }, round);
+    }
+
+    /**
+     * @Description: 每轮先执行不计时的 side，再执行计时的 round，直到 round 的耗时稳定或超时。
+     * side 期间的 JIT 编译仍然计入稳定判断，side 里的路径编译完之前不会结束预热。
+     **/
+    public static Result run(String name, Runnable side, Runnable round) {
+        long[] times = new long[STABLE_ROUNDS];
+        // 每轮开始时的墙钟和 JIT 编译时间，最老的一项就是窗口的起点
+        long[] starts = new long[STABLE_ROUNDS];
+        long[] jit = new long[STABLE_ROUNDS];
+        long start = System.nanoTime();
+        long jitStart = jitMillis();
+        long first = 0;
+        int rounds = 0;
+        boolean stable = false;
+        do {
+            starts[rounds % STABLE_ROUNDS] = System.nanoTime();
+            jit[rounds % STABLE_ROUNDS] = jitMillis();
+            side.run();
+            long t = System.nanoTime();
+            round.run();
+            long elapsed = System.nanoTime() - t;
+            if (rounds == 0) {
+                first = elapsed;
+            }
+            times[rounds % STABLE_ROUNDS] = elapsed;
+            rounds++;
+            if (rounds >= Math.max(MIN_ROUNDS, STABLE_ROUNDS) && isStable(times, starts, jit, rounds)) {
+                stable = true;
+                break;
+            }
+        } while (System.nanoTime() - start < MAX_NANOS);
+        Result result = new Result(name, rounds, first, times[(rounds - 1) % STABLE_ROUNDS],
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), jitMillis() - jitStart, stable);
+        if (stable) {
+            log.info(result.toString());
+        } else {
+            log.warn(result + ", compiled code did not settle within -Dwarmup.max.seconds");
+        }
+        return result;
+    }
+
+    /**
+     * 最近 STABLE_ROUNDS 轮的耗时都在平均值的容差以内，且这几轮期间 JIT 编译时间不超过墙钟时间的容差
+     */
+    private static boolean isStable(long[] times, long[] starts, long[] jit, int rounds) {
+        long sum = 0;
+        for (long t : times) {
+            sum += t;
+        }
+        double mean = (double) sum / times.length;
+        for (long t : times) {
+            if (Math.abs(t - mean) > mean * TOLERANCE) {
+                return false;
+            }
+        }
+        if (!JIT_TIME) {
+            return true;
+        }
+        // 环形数组中最老的一项是 STABLE_ROUNDS 轮之前开始时的值，到现在正好覆盖 STABLE_ROUNDS 轮
+        int oldest = rounds % jit.length;
+        long compiled = jitMillis() - jit[oldest];
+        return compiled <= TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - starts[oldest]) * TOLERANCE;
+    }
+
+    private static long jitMillis() {
+        return JIT_TIME ? JIT.getTotalCompilationTime() : 0;
+    }
+
+    /**
+     * @Description: 生成一个合成的任务 batch，编码方式与 Generator 相同。
+     * otherKernels 为 false 时全部使用第一个登记的内核，与 Generator 默认的配比相同，用于计时的一轮；
+     * 为 true 时其余内核按固定间隔轮流出现，用于不计时的附加处理。
+     **/
+    public static void syntheticTasks(ByteBuffer buffer, long firstId, Random random, boolean otherKernels) {
+        List<TaskKernel> kernels = TaskKernels.all();
+        for (int i = 0; i < TaskCodec.BATCH_SIZE; i++) {
+            TaskCodec.putTask(buffer, i, firstId + i, kernelAt(kernels, i, otherKernels), random.nextInt(65535) + 1, random.nextInt(65535) + 1);
+        }
+    }
+
+    /**
+     * @Description: 生成一个合成的结果 batch，编码方式与 Executor 相同，结果是真实计算出来的；otherKernels 的含义同 syntheticTasks
+     **/
+    public static void syntheticResults(ByteBuffer buffer, long firstId, Random random, boolean otherKernels) {
+        List<TaskKernel> kernels = TaskKernels.all();
+        byte[] out = buffer.array();
+        for (int i = 0; i < TaskCodec.BATCH_SIZE; i++) {
+            int k = kernelAt(kernels, i, otherKernels);
+            int x = random.nextInt(65535) + 1;
+            int y = random.nextInt(65535) + 1;
+            TaskCodec.putResultHeader(buffer, i, firstId + i, k, x, y);
+            TaskKernels.require(k).compute(x, y, out, TaskCodec.resultHashOffset(i));
+        }
+    }
+
+    private static int kernelAt(List<TaskKernel> kernels, int i, boolean otherKernels) {
+        if (!otherKernels || kernels.size() == 1 || i % OTHER_KERNEL_STRIDE != 0) {
+            return kernels.get(0).id();
+        }
+        return kernels.get(1 + (i / OTHER_KERNEL_STRIDE) % (kernels.size() - 1)).id();
+    }
+
+    /**
+     * @Description: 丢弃所有写入的输出流，预热时代替还没有建立的下游链路
+     **/
+    public static OutputStream nullSink() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+    }
+
+    public static final class Result {
+        private final String name;
+        private final int rounds;
+        private final long firstNanos;
+        private final long lastNanos;
+        private final long elapsedMillis;
+        private final long jitMillis;
+        private final boolean stable;
+
+        private Result(String name, int rounds, long firstNanos, long lastNanos, long elapsedMillis, long jitMillis, boolean stable) {
+            this.name = name;
+            this.rounds = rounds;
+            this.firstNanos = firstNanos;
+            this.lastNanos = lastNanos;
+            this.elapsedMillis = elapsedMillis;
+            this.jitMillis = jitMillis;
+            this.stable = stable;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public boolean isStable() {
+            return stable;
+        }
+
+        @Override
+        public String toString() {
+            return name + " warmed up in " + elapsedMillis + " ms, " + rounds + " rounds, round time "
+                    + TimeUnit.NANOSECONDS.toMicros(firstNanos) + " us -> " + TimeUnit.NANOSECONDS.toMicros(lastNanos) + " us, JIT "
+                    + jitMillis + " ms" + (stable ? "" : " (not stable)");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.cw.core.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @ClassName : ResumableOutputStreamTest
+ * @Description :  成组写入的 batch 各自成帧，一次 gathering write 发出，接收端按顺序读到完整的 batch
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class ResumableOutputStreamTest {
+
+    private static final int BATCH_BYTES = 1024;
+
+    private ServerSocket server;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void groupOfBatchesGoesOutInOneWrite() throws Exception {
+        Future<DataInputStream> accepting = executor.submit(() -> new DataInputStream(new ResumableInputStream(server, BATCH_BYTES)));
+        ResumableOutputStream out = new ResumableOutputStream("127.0.0.1", server.getLocalPort(), BATCH_BYTES, 64);
+        DataInputStream in = accepting.get(5, TimeUnit.SECONDS);
+
+        ByteBuffer[] group = new ByteBuffer[8];
+        for (int i = 0; i < group.length; i++) {
+            group[i] = batch((byte) i);
+        }
+        assertEquals(1, out.write(group, 0, group.length));
+        for (int i = 0; i < group.length; i++) {
+            // 写出后 position 不变，调用方还可以拿同一个缓冲区录制
+            assertEquals(0, group[i].position());
+            byte[] received = new byte[BATCH_BYTES];
+            in.readFully(received);
+            assertArrayEquals(group[i].array(), received);
+        }
+        out.close();
+    }
+
+    @Test(timeout = 10000)
+    public void groupLargerThanWindowIsSplitAndStillDelivered() throws Exception {
+        Future<DataInputStream> accepting = executor.submit(() -> new DataInputStream(new ResumableInputStream(server, BATCH_BYTES)));
+        ResumableOutputStream out = new ResumableOutputStream("127.0.0.1", server.getLocalPort(), BATCH_BYTES, 8);
+        DataInputStream in = accepting.get(5, TimeUnit.SECONDS);
+
+        ByteBuffer[] group = new ByteBuffer[20];
+        for (int i = 0; i < group.length; i++) {
+            group[i] = batch((byte) i);
+        }
+        Future<Integer> writing = executor.submit(() -> out.write(group, 0, group.length));
+        for (int i = 0; i < group.length; i++) {
+            byte[] received = new byte[BATCH_BYTES];
+            in.readFully(received);
+            assertArrayEquals(group[i].array(), received);
+        }
+        assertTrue(writing.get(5, TimeUnit.SECONDS) >= 3);
+        out.close();
+    }
+
+    private static ByteBuffer batch(byte value) {
+        byte[] batch = new byte[BATCH_BYTES];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = (byte) (value + i);
+        }
+        return ByteBuffer.wrap(batch);
+    }
+}
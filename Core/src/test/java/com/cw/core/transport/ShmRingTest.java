@@ -0,0 +1,149 @@
+package com.cw.core.transport;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @ClassName : ShmRingTest
+ * @Description :  消费者重新创建环形缓冲区时，生产者不能继续写进已经没人读的旧文件；消费者还活着时不能被另一个消费者接管
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class ShmRingTest {
+
+    private static final int CAPACITY = 4096;
+    /** 不可能存在的 pid，模拟被 kill 的消费者 */
+    private static final long DEAD_PID = Long.MAX_VALUE;
+    /** init 进程一直存在，模拟另一个还在运行的消费者 */
+    private static final long LIVE_PID = 1;
+
+    private Path dir;
+    private Path path;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("shm-ring-test");
+        path = dir.resolve("cw-test.ring");
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test(timeout = 10000)
+    public void attachWaitsForLiveConsumerInsteadOfStaleRing() throws Exception {
+        ShmRing.create(path, CAPACITY, DEAD_PID);
+        Future<ShmRing> attaching = executor.submit(() -> ShmRing.attach(path));
+        try {
+            attaching.get(300, TimeUnit.MILLISECONDS);
+            fail("attached to a ring whose consumer is gone");
+        } catch (TimeoutException expected) {
+            // 还在等待新的消费者
+        }
+
+        ShmRing consumer = ShmRing.create(path, CAPACITY);
+        ShmOutputStream producer = new ShmOutputStream(attaching.get(5, TimeUnit.SECONDS));
+        byte[] batch = batch(100, (byte) 7);
+        producer.write(batch, 0, batch.length);
+        assertArrayEquals(batch, readFully(consumer, batch.length));
+    }
+
+    @Test(timeout = 10000)
+    public void producerMovesToRecreatedRing() throws Exception {
+        ShmRing stale = ShmRing.create(path, CAPACITY);
+        ShmOutputStream producer = new ShmOutputStream(ShmRing.attach(path));
+        byte[] lost = batch(100, (byte) 1);
+        producer.write(lost, 0, lost.length);
+
+        ShmRing consumer = ShmRing.create(path, CAPACITY);
+        assertTrue(stale.isReplaced());
+        byte[] batch = batch(100, (byte) 2);
+        producer.write(batch, 0, batch.length);
+        // 新消费者从batch边界开始读到重新连接后的数据，旧环中的数据不会混进来
+        assertArrayEquals(batch, readFully(consumer, batch.length));
+    }
+
+    @Test(timeout = 10000)
+    public void producerBlockedOnFullStaleRingMovesToRecreatedRing() throws Exception {
+        ShmRing.create(path, CAPACITY);
+        ShmOutputStream producer = new ShmOutputStream(ShmRing.attach(path));
+        byte[] batch = batch(CAPACITY * 2, (byte) 3);
+        Future<?> writing = executor.submit(() -> {
+            producer.write(batch, 0, batch.length);
+            return null;
+        });
+        Thread.sleep(200);
+        assertFalse("旧环没有消费者，生产者应该在等待空间", writing.isDone());
+
+        ShmRing consumer = ShmRing.create(path, CAPACITY);
+        assertArrayEquals(batch, readFully(consumer, batch.length));
+        writing.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test(timeout = 10000)
+    public void closingOldConsumerKeepsNewerRing() throws Exception {
+        ShmRing old = ShmRing.create(path, CAPACITY);
+        ShmRing current = ShmRing.create(path, CAPACITY);
+        old.close();
+        assertTrue(Files.exists(path));
+        assertFalse(current.isReplaced());
+        current.close();
+        assertFalse(Files.exists(path));
+    }
+
+    @Test(timeout = 10000)
+    public void createRefusesRingOwnedByLiveConsumer() throws Exception {
+        Assume.assumeTrue(Files.isDirectory(Paths.get("/proc", Long.toString(LIVE_PID))));
+        ShmRing running = ShmRing.create(path, CAPACITY, LIVE_PID);
+        try {
+            ShmRing.create(path, CAPACITY);
+            fail("took over a ring whose consumer is still running");
+        } catch (IOException expected) {
+            // 正在运行的链路不受影响
+        }
+        assertFalse(running.isReplaced());
+    }
+
+    private static byte[] batch(int length, byte value) {
+        byte[] batch = new byte[length];
+        Arrays.fill(batch, value);
+        batch[0] = (byte) length;
+        return batch;
+    }
+
+    private static byte[] readFully(ShmRing ring, int length) {
+        byte[] out = new byte[length];
+        int off = 0;
+        while (off < length) {
+            int n = ring.read(out, off, length - off);
+            assertTrue(n > 0);
+            off += n;
+        }
+        assertEquals(length, off);
+        return out;
+    }
+}
@@ -1,6 +1,6 @@
 package com.cw;
 
-import com.cw.utils.Utils;
+import com.cw.core.util.Utils;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
@@ -13,12 +13,14 @@ import java.net.InetAddress;
 @Slf4j
 public class MonitoringSystem {
 
-    private enum ActionEnum {
-        GEN(), EXE(), VAL();
+    /** READY 为服务预热完成、开始监听时的一次性上报，内容以组件名开头，例如 READY@EXE warmed up in 3120 ms */
+    enum ActionEnum {
+        GEN(), EXE(), VAL(), READY();
     }
 
     private DatagramSocket udpSocket;
     private int byteNum;
+    private final Reconciler reconciler = new Reconciler();
 
     public MonitoringSystem(int port, int byteNum) {
         try {
@@ -46,6 +48,15 @@ public class MonitoringSystem {
                     String content = s[1];
                     if (Utils.enumContains(ActionEnum.class, actionType)) {
                         udpHandle(ActionEnum.valueOf(actionType), content);
+                        // 第三段是带序号的累计计数，用于跨组件对账
+                        if (ActionEnum.valueOf(actionType) == ActionEnum.READY) {
+                            String stage = content.split(" ")[0];
+                            if (Utils.enumContains(ActionEnum.class, stage)) {
+                                reconciler.onReady(ActionEnum.valueOf(stage));
+                            }
+                        } else if (s.length > 2) {
+                            reconciler.onReport(ActionEnum.valueOf(actionType), s[2]);
+                        }
                     }
                 }
             } catch (IOException e) {
@@ -71,6 +82,10 @@ public class MonitoringSystem {
                 log.info("*************************************************");
                 break;
             }
+            case READY: {
+                log.info("Ready: " + content);
+                break;
+            }
         }
     }
     public static void main(String[] args) {
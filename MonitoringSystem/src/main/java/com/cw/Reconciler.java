@@ -0,0 +1,240 @@
+package com.cw;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * @ClassName : Reconciler
+ * @Description :  把 GEN、EXE、VAL 三个组件带序号的上报按周期对齐，计算每一跳的积压、丢失率和吞吐比，
+ * 持续偏离或吞吐骤降时输出告警，不用再靠人工比对日志发现容量问题。
+ * 上报中带的是累计值，周期增量由相邻两次上报相减得到，所以丢一个 UDP 包不会让对账出错。
+ * 各组件开始上报的时刻不同：Executor 先连下游再等上游，Generator 由人工启动，先开始上报的组件会多出几个计数全为 0 的周期，
+ * 按序号直接对齐会让整条链路一直错开几个周期，出现虚假的在途积压和偏离告警。所以累计计数全为 0 的上报只更新基线，
+ * 每个组件从第一个有数据的周期开始编号，各组件的第 1 行都是任务开始流动的那个周期。
+ * 任一组件重启（上报 READY 或序号变小）时重新对齐。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public class Reconciler {
+
+    private static final double DIVERGENCE_TOLERANCE = Double.parseDouble(System.getProperty("monitor.divergence.tolerance", "0.02"));
+    private static final int DIVERGENCE_INTERVALS = Integer.getInteger("monitor.divergence.intervals", 3);
+    private static final double DROP_THRESHOLD = Double.parseDouble(System.getProperty("monitor.drop.threshold", "0.3"));
+    private static final double LOSS_THRESHOLD = Double.parseDouble(System.getProperty("monitor.loss.threshold", "0.001"));
+    /** 参与对账的组件，READY 不带计数 */
+    private static final Set<MonitoringSystem.ActionEnum> STAGES = EnumSet.of(
+            MonitoringSystem.ActionEnum.GEN, MonitoringSystem.ActionEnum.EXE, MonitoringSystem.ActionEnum.VAL);
+    /** 只保留最近几个周期还没凑齐的行，更早的说明有组件掉线了 */
+    private static final int MAX_PENDING_ROWS = 5;
+
+    /** 每一跳：名字，上游计数，下游计数 */
+    private enum Hop {
+        GEN_EXE("GEN->EXE", MonitoringSystem.ActionEnum.GEN, "generated", MonitoringSystem.ActionEnum.EXE, "received"),
+        EXE("EXE", MonitoringSystem.ActionEnum.EXE, "received", MonitoringSystem.ActionEnum.EXE, "completed"),
+        EXE_VAL("EXE->VAL", MonitoringSystem.ActionEnum.EXE, "completed", MonitoringSystem.ActionEnum.VAL, "validated");
+
+        private final String label;
+        private final MonitoringSystem.ActionEnum from;
+        private final String fromCounter;
+        private final MonitoringSystem.ActionEnum to;
+        private final String toCounter;
+
+        Hop(String label, MonitoringSystem.ActionEnum from, String fromCounter, MonitoringSystem.ActionEnum to, String toCounter) {
+            this.label = label;
+            this.from = from;
+            this.fromCounter = fromCounter;
+            this.to = to;
+            this.toCounter = toCounter;
+        }
+    }
+
+    /** 各组件最近一次上报的序号和累计值 */
+    private final Map<MonitoringSystem.ActionEnum, Long> lastSeq = new EnumMap<>(MonitoringSystem.ActionEnum.class);
+    private final Map<MonitoringSystem.ActionEnum, Long> seqOffset = new EnumMap<>(MonitoringSystem.ActionEnum.class);
+    private final Map<MonitoringSystem.ActionEnum, Map<String, Long>> lastCounters = new EnumMap<>(MonitoringSystem.ActionEnum.class);
+    /** 对齐后的周期 -> 各组件本周期增量 */
+    private final TreeMap<Long, Map<MonitoringSystem.ActionEnum, Map<String, Long>>> rows = new TreeMap<>();
+    private final Map<Hop, Long> backlog = new EnumMap<>(Hop.class);
+    private final Map<Hop, Integer> divergentIntervals = new EnumMap<>(Hop.class);
+    /** 各组件主计数的指数移动平均，用于发现吞吐骤降 */
+    private final Map<MonitoringSystem.ActionEnum, Double> average = new EnumMap<>(MonitoringSystem.ActionEnum.class);
+
+    /**
+     * @Description: 处理一条上报的计数部分，例如 seq=3,generated=450109440
+     **/
+    public void onReport(MonitoringSystem.ActionEnum stage, String counters) {
+        Map<String, Long> values = parse(counters);
+        Long seq = values.remove("seq");
+        if (seq == null) {
+            return;
+        }
+        Long previous = lastSeq.get(stage);
+        if (previous != null && seq <= previous) {
+            log.info("Reconciler: {} restarted (seq {} after {}), realign all stages", stage, seq, previous);
+            reset();
+        } else if (previous != null && seq > previous + 1) {
+            log.warn("Reconciler: lost {} reports from {}", seq - previous - 1, stage);
+        }
+        Map<String, Long> last = lastCounters.get(stage);
+        if (!seqOffset.containsKey(stage) || isIdle(values)) {
+            // 还没有任务流过这个组件，这次上报只作为基线
+            seqOffset.put(stage, seq);
+            last = null;
+        }
+        lastSeq.put(stage, seq);
+        lastCounters.put(stage, values);
+        if (last == null) {
+            return; // 重新对齐后的第一次上报只作为基线
+        }
+        // 中间丢了上报时，把增量平均分摊到缺失的周期上
+        long gap = seq - previous;
+        for (long i = 1; i <= gap; i++) {
+            Map<String, Long> delta = new TreeMap<>();
+            for (Map.Entry<String, Long> e : values.entrySet()) {
+                Long before = last.get(e.getKey());
+                long diff = e.getValue() - (before == null ? 0 : before);
+                delta.put(e.getKey(), i < gap ? diff / gap : diff - diff / gap * (gap - 1));
+            }
+            long key = previous + i - seqOffset.get(stage);
+            rows.computeIfAbsent(key, k -> new EnumMap<>(MonitoringSystem.ActionEnum.class)).put(stage, delta);
+        }
+        drain();
+    }
+
+    /**
+     * @Description: 组件预热完成、重新开始监听，它之后的上报序号从 0 开始，所有组件重新对齐
+     **/
+    public void onReady(MonitoringSystem.ActionEnum stage) {
+        if (!lastSeq.isEmpty()) {
+            log.info("Reconciler: {} ready, realign all stages", stage);
+        }
+        reset();
+    }
+
+    private void reset() {
+        lastSeq.clear();
+        seqOffset.clear();
+        lastCounters.clear();
+        rows.clear();
+        backlog.clear();
+        divergentIntervals.clear();
+        average.clear();
+    }
+
+    private void drain() {
+        Iterator<Map.Entry<Long, Map<MonitoringSystem.ActionEnum, Map<String, Long>>>> it = rows.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Map<MonitoringSystem.ActionEnum, Map<String, Long>>> row = it.next();
+            if (row.getValue().size() == STAGES.size()) {
+                evaluate(row.getKey(), row.getValue());
+                it.remove();
+            } else if (rows.size() > MAX_PENDING_ROWS) {
+                log.warn("Reconciler: interval {} incomplete, only {} reported", row.getKey(), row.getValue().keySet());
+                it.remove();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void evaluate(long interval, Map<MonitoringSystem.ActionEnum, Map<String, Long>> row) {
+        StringBuilder sb = new StringBuilder("Reconcile interval ").append(interval).append(": ");
+        for (Hop hop : Hop.values()) {
+            long in = get(row, hop.from, hop.fromCounter);
+            long out = get(row, hop.to, hop.toCounter);
+            long lost = hop == Hop.EXE ? get(row, MonitoringSystem.ActionEnum.EXE, "discarded") : 0;
+            long total = backlog.getOrDefault(hop, 0L) + in - out - lost;
+            backlog.put(hop, total);
+            double ratio = in == 0 ? 1.0 : (double) out / in;
+            double lossRate = in == 0 ? 0.0 : (double) lost / in;
+            sb.append(hop.label).append(" ratio ").append(String.format("%.3f", ratio))
+                    .append(" in-flight ").append(total)
+                    .append(" loss ").append(String.format("%.2f%%", lossRate * 100)).append("; ");
+
+            int divergent = ratio < 1 - DIVERGENCE_TOLERANCE ? divergentIntervals.getOrDefault(hop, 0) + 1 : 0;
+            divergentIntervals.put(hop, divergent);
+            if (divergent >= DIVERGENCE_INTERVALS) {
+                log.warn("ALERT {}: downstream kept only {} of upstream for {} intervals, in-flight backlog {}",
+                        hop.label, String.format("%.1f%%", ratio * 100), divergent, total);
+            }
+            if (lossRate > LOSS_THRESHOLD) {
+                log.warn("ALERT {}: {} tasks lost in interval {} ({})", hop.label, lost, interval, String.format("%.2f%%", lossRate * 100));
+            }
+        }
+        log.info(sb.toString());
+        checkThroughput(MonitoringSystem.ActionEnum.GEN, get(row, MonitoringSystem.ActionEnum.GEN, "generated"));
+        checkThroughput(MonitoringSystem.ActionEnum.EXE, get(row, MonitoringSystem.ActionEnum.EXE, "completed"));
+        checkThroughput(MonitoringSystem.ActionEnum.VAL, get(row, MonitoringSystem.ActionEnum.VAL, "validated"));
+    }
+
+    private void checkThroughput(MonitoringSystem.ActionEnum stage, long count) {
+        Double avg = average.get(stage);
+        if (avg != null && avg > 0 && count < avg * (1 - DROP_THRESHOLD)) {
+            log.warn("ALERT {}: throughput dropped to {} from average {}", stage, count, avg.longValue());
+        }
+        average.put(stage, avg == null ? count : avg * 0.7 + count * 0.3);
+    }
+
+    /**
+     * 累计计数全为 0，说明任务还没有流到这个组件
+     */
+    private static boolean isIdle(Map<String, Long> values) {
+        for (long v : values.values()) {
+            if (v != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @Description: 某一跳当前的在途积压，例如 EXE->VAL，没有这一跳或还没对账时返回 0
+     **/
+    long getInFlight(String hop) {
+        for (Hop h : Hop.values()) {
+            if (h.label.equals(hop)) {
+                return backlog.getOrDefault(h, 0L);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @Description: 某一跳连续偏离的周期数
+     **/
+    int getDivergentIntervals(String hop) {
+        for (Hop h : Hop.values()) {
+            if (h.label.equals(hop)) {
+                return divergentIntervals.getOrDefault(h, 0);
+            }
+        }
+        return 0;
+    }
+
+    private static long get(Map<MonitoringSystem.ActionEnum, Map<String, Long>> row, MonitoringSystem.ActionEnum stage, String counter) {
+        Long v = row.get(stage).get(counter);
+        return v == null ? 0 : v;
+    }
+
+    private static Map<String, Long> parse(String counters) {
+        Map<String, Long> values = new TreeMap<>();
+        for (String pair : counters.trim().split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                try {
+                    values.put(pair.substring(0, eq).trim(), Long.parseLong(pair.substring(eq + 1).trim()));
+                } catch (NumberFormatException e) {
+                    log.warn("Reconciler: bad counter {}", pair);
+                }
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,53 @@
+package com.cw;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @ClassName : ReconcilerTest
+ * @Description :  组件开始上报的时刻不同时，对账仍然按任务开始流动的周期对齐，不会出现虚假的在途积压和偏离
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class ReconcilerTest {
+
+    private static final long PER_INTERVAL = 1000;
+    private static final int INTERVALS = 8;
+
+    @Test
+    public void stageReportingIntervalsEarlyStaysAligned() {
+        Reconciler reconciler = new Reconciler();
+        int early = 3;
+        // Validator 在 Executor 连上时就开始上报，比 Generator 和 Executor 早 early 个周期，这几个周期计数都是 0
+        for (int i = 0; i < early; i++) {
+            reconciler.onReport(MonitoringSystem.ActionEnum.VAL, "seq=" + i + ",validated=0");
+        }
+        for (int i = 0; i < INTERVALS; i++) {
+            long total = i * PER_INTERVAL;
+            reconciler.onReport(MonitoringSystem.ActionEnum.GEN, "seq=" + i + ",generated=" + total);
+            reconciler.onReport(MonitoringSystem.ActionEnum.EXE, "seq=" + i + ",received=" + total + ",completed=" + total + ",discarded=0");
+            reconciler.onReport(MonitoringSystem.ActionEnum.VAL, "seq=" + (early + i) + ",validated=" + total);
+        }
+        assertAligned(reconciler);
+    }
+
+    @Test
+    public void stagesStartingTogetherStayAligned() {
+        Reconciler reconciler = new Reconciler();
+        for (int i = 0; i < INTERVALS; i++) {
+            long total = i * PER_INTERVAL;
+            reconciler.onReport(MonitoringSystem.ActionEnum.VAL, "seq=" + i + ",validated=" + total);
+            reconciler.onReport(MonitoringSystem.ActionEnum.EXE, "seq=" + i + ",received=" + total + ",completed=" + total + ",discarded=0");
+            reconciler.onReport(MonitoringSystem.ActionEnum.GEN, "seq=" + i + ",generated=" + total);
+        }
+        assertAligned(reconciler);
+    }
+
+    private static void assertAligned(Reconciler reconciler) {
+        for (String hop : new String[]{"GEN->EXE", "EXE", "EXE->VAL"}) {
+            assertEquals(hop, 0, reconciler.getInFlight(hop));
+            assertEquals(hop, 0, reconciler.getDivergentIntervals(hop));
+        }
+    }
+}
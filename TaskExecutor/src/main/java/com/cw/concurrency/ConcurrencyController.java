@@ -0,0 +1,174 @@
+package com.cw.concurrency;
+
+import com.cw.metrics.ExecutorStats;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * @ClassName : ConcurrencyController
+ * @Description :  根据实测数据在运行时调整工作线程数和等待队列容量。
+ * 每个周期统计：工作线程的计算时间（墙钟）、实际拿到的CPU时间、空闲时间、batch在队列中的等待时间和吞吐量。
+ * 1. CPU时间明显少于墙钟时间：线程在等CPU（与 Generator/Validator 同机或容器CPU配额），减少线程；
+ * 2. 工作线程大量空闲：减少线程；
+ * 3. 线程几乎满载、拿得到CPU且队列有积压：增加线程；
+ * 4. 调整后吞吐下降超过 3% 则回退，并保持几个周期不动（爬山法）。
+ * 队列容量按 吞吐量 * 最大排队时间 计算，排队超过这个时间的batch与其等待不如直接丢弃。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public class ConcurrencyController implements ConcurrencyControllerMBean {
+
+    private static final double CPU_STARVED_RATIO = 0.8;
+    private static final double IDLE_UTILIZATION = 0.5;
+    private static final double BUSY_UTILIZATION = 0.9;
+    private static final double REVERT_THRESHOLD = 0.03;
+    private static final int HOLD_PERIODS = 3;
+    private static final int MIN_QUEUE_CAPACITY = 16;
+    private static final int MAX_QUEUE_CAPACITY = 10240;
+
+    private final ThreadPoolExecutor threadPool;
+    private final DeadlineQueue<Runnable> queue;
+    private final ExecutorStats stats;
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final long maxDwellMillis;
+    private volatile boolean enabled = true;
+    private volatile String lastDecision = "none";
+    private long lastNanos = System.nanoTime();
+    private long lastCount;
+    private long lastBusy;
+    private long lastCpu;
+    private long lastWaitCount;
+    private long lastWaitNanos;
+    private double lastThroughput;
+    private int lastChange;
+    private int hold;
+
+    public ConcurrencyController(ThreadPoolExecutor threadPool, DeadlineQueue<Runnable> queue, ExecutorStats stats,
+                                 int minWorkers, int maxWorkers, long maxDwellMillis) {
+        this.threadPool = threadPool;
+        this.queue = queue;
+        this.stats = stats;
+        this.minWorkers = minWorkers;
+        this.maxWorkers = maxWorkers;
+        this.maxDwellMillis = maxDwellMillis;
+    }
+
+    /**
+     * @Description: 注册到平台 MBeanServer，可以在 jconsole 中查看或临时关闭自动调整
+     **/
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("com.cw:type=TaskExecutor,name=Concurrency"));
+        } catch (Exception e) {
+            log.error("JMX register: ", e);
+        }
+    }
+
+    /**
+     * @Description: 由定时线程周期调用
+     **/
+    public void adjust() {
+        long now = System.nanoTime();
+        long count = stats.compute.getCount();
+        long busy = stats.compute.getTotalNanos();
+        long cpu = stats.computeCpu.getTotalNanos();
+        long waitCount = stats.poolWait.getCount();
+        long waitNanos = stats.poolWait.getTotalNanos();
+        long periodNanos = now - lastNanos;
+        long batches = count - lastCount;
+        long busyNanos = busy - lastBusy;
+        long cpuNanos = cpu - lastCpu;
+        lastNanos = now;
+        lastCount = count;
+        lastBusy = busy;
+        lastCpu = cpu;
+        long waits = waitCount - lastWaitCount;
+        double dwellMillis = waits == 0 ? 0 : (waitNanos - lastWaitNanos) / 1e6 / waits;
+        lastWaitCount = waitCount;
+        lastWaitNanos = waitNanos;
+        if (!enabled || batches == 0 || periodNanos <= 0) {
+            return;
+        }
+
+        int workers = threadPool.getCorePoolSize();
+        double throughput = batches * 1e9 / periodNanos;
+        double utilization = (double) busyNanos / ((double) workers * periodNanos);
+        double cpuRatio = (double) cpuNanos / busyNanos;
+        String reason = String.format("throughput %.1f batches/s, utilization %.2f, cpu %.2f, queue %d, dwell %.1f ms",
+                throughput, utilization, cpuRatio, queue.size(), dwellMillis);
+
+        int change = 0;
+        if (lastChange != 0 && throughput < lastThroughput * (1 - REVERT_THRESHOLD)) {
+            change = -lastChange;
+            hold = HOLD_PERIODS;
+            decide(workers + change, "revert, " + reason);
+        } else if (hold > 0) {
+            hold--;
+        } else if (cpuRatio < CPU_STARVED_RATIO && workers > minWorkers) {
+            change = -1;
+            decide(workers - 1, "cpu starved, " + reason);
+        } else if (utilization < IDLE_UTILIZATION && workers > minWorkers) {
+            change = -1;
+            decide(workers - 1, "idle, " + reason);
+        } else if (utilization > BUSY_UTILIZATION && cpuRatio >= CPU_STARVED_RATIO && !queue.isEmpty() && workers < maxWorkers) {
+            change = 1;
+            decide(workers + 1, "saturated, " + reason);
+        }
+        // 回退本身不再参与下一次的比较
+        lastChange = hold == HOLD_PERIODS ? 0 : change;
+        lastThroughput = throughput;
+
+        long capacity = (long) (throughput * maxDwellMillis / 1000);
+        queue.setCapacity((int) Math.max(Math.max(MIN_QUEUE_CAPACITY, 2L * threadPool.getCorePoolSize()), Math.min(capacity, MAX_QUEUE_CAPACITY)));
+    }
+
+    private void decide(int workers, String reason) {
+        int current = threadPool.getCorePoolSize();
+        if (workers > current) {
+            threadPool.setMaximumPoolSize(workers);
+            threadPool.setCorePoolSize(workers);
+        } else {
+            threadPool.setCorePoolSize(workers);
+            threadPool.setMaximumPoolSize(workers);
+        }
+        lastDecision = "workers " + current + " -> " + workers + " (" + reason + ")";
+        log.info("Controller: " + lastDecision);
+    }
+
+    /**
+     * @Description: 附在监控上报中的摘要
+     **/
+    public String report() {
+        return "Workers " + threadPool.getCorePoolSize() + ", queue capacity " + queue.getCapacity() + ", last decision: " + lastDecision;
+    }
+
+    @Override
+    public int getWorkers() {
+        return threadPool.getCorePoolSize();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queue.getCapacity();
+    }
+
+    @Override
+    public String getLastDecision() {
+        return lastDecision;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
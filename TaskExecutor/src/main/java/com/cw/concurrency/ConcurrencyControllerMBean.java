@@ -0,0 +1,20 @@
+package com.cw.concurrency;
+
+/**
+ * @ClassName : ConcurrencyControllerMBean
+ * @Description :  自适应并发控制器的 JMX 视图
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public interface ConcurrencyControllerMBean {
+
+    int getWorkers();
+
+    int getQueueCapacity();
+
+    String getLastDecision();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+}
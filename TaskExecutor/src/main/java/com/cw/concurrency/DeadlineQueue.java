@@ -0,0 +1,223 @@
+package com.cw.concurrency;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * @ClassName : DeadlineQueue
+ * @Description :  带截止时间的有界 FIFO 阻塞队列，供 ThreadPoolExecutor 使用。
+ * 每个 batch 的截止时间都是收到时刻加同一个常量，到达顺序就是截止时间顺序，按截止时间排序（EDF）与 FIFO 完全相同，
+ * 所以用数组双端队列按到达顺序出队，入队出队都是 O(1)，不需要堆；已经过期的元素总是在队头。
+ * 容量可以在运行时调整。队列满时，把队头所有已经过了截止时间的元素挤出去（交给 onEvicted）给新元素腾位置；
+ * 队头还没过期时 offer 返回 false，由线程池的拒绝策略处理。这样过载时丢掉的是已经没有意义的旧 batch，而不是刚到的新 batch。
+ * 截止时间是 System.nanoTime() 的值，只能做差比较。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class DeadlineQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<E> queue;
+    private final ToLongFunction<? super E> deadlineOf;
+    private final Consumer<? super E> onEvicted;
+    private volatile int capacity;
+
+    public DeadlineQueue(int capacity, ToLongFunction<? super E> deadlineOf, Consumer<? super E> onEvicted) {
+        this.capacity = capacity;
+        this.deadlineOf = deadlineOf;
+        this.onEvicted = onEvicted;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public boolean offer(E e) {
+        List<E> evicted = null;
+        lock.lock();
+        try {
+            if (queue.size() >= capacity) {
+                long now = System.nanoTime();
+                // nanoTime 可能溢出，比较差值而不是直接比较大小
+                while (!queue.isEmpty() && deadlineOf.applyAsLong(queue.peekFirst()) - now < 0) {
+                    if (evicted == null) {
+                        evicted = new ArrayList<>();
+                    }
+                    evicted.add(queue.pollFirst());
+                }
+                if (queue.size() >= capacity) {
+                    return false;
+                }
+            }
+            queue.offerLast(e);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+            if (evicted != null) {
+                evicted.forEach(onEvicted);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        offer(e, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        for (; ; ) {
+            if (offer(e)) {
+                return true;
+            }
+            lock.lockInterruptibly();
+            try {
+                if (queue.size() >= capacity) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return queue.isEmpty() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private E dequeue() {
+        E e = queue.pollFirst();
+        notFull.signal();
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return queue.peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            return queue.remove(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+
+    /**
+     * @Description: 快照迭代器，不支持 remove
+     **/
+    @Override
+    public Iterator<E> iterator() {
+        lock.lock();
+        try {
+            return new ArrayList<>(queue).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && !queue.isEmpty()) {
+                c.add(queue.pollFirst());
+                n++;
+            }
+            if (n > 0) {
+                notFull.signalAll();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+}
@@ -0,0 +1,222 @@
+package com.cw.metrics;
+
+import com.cw.core.kernel.TaskKernels;
+import com.cw.pool.BatchPool;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.function.IntSupplier;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @ClassName : ExecutorStats
+ * @Description :  Executor 各阶段的计时器和计数器，注册为 JMX MBean，同时生成每分钟上报给监控系统的摘要。
+ * 阶段：ingest-decode 解析一个batch，pool-wait 在线程池队列中等待，compute 计算，
+ * compute-cpu 计算期间实际得到的CPU时间，dwell 在完成队列中等待发送，write 写 socket，latency 从收到到发送完成的总耗时。
+ * 丢弃的batch按原因分别计数：queue-full 队列满且没有过期的batch可挤出，expired 开始计算时已过截止时间，evicted 队列满时作为已过期的batch被挤出。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public class ExecutorStats implements ExecutorStatsMBean {
+
+    private static final String DOMAIN = "com.cw:type=TaskExecutor";
+
+    public final StageTimer ingestDecode = new StageTimer("decode");
+    public final StageTimer poolWait = new StageTimer("pool-wait");
+    public final StageTimer compute = new StageTimer("compute");
+    /** 与 compute 同一段代码的线程CPU时间，两者之比低于1说明工作线程在等CPU */
+    public final StageTimer computeCpu = new StageTimer("compute-cpu");
+    public final StageTimer dwell = new StageTimer("dwell");
+    public final StageTimer write = new StageTimer("write");
+    public final StageTimer latency = new StageTimer("latency");
+    public final LongAdder receivedBatches = new LongAdder();
+    public final LongAdder completedBatches = new LongAdder();
+    /** 线程池队列已满且没有过期的batch可挤出，被拒绝策略丢弃的batch */
+    public final LongAdder discardedBatches = new LongAdder();
+    /** 开始计算时已经过了截止时间的batch */
+    public final LongAdder expiredBatches = new LongAdder();
+    /** 队列满时因已过期被新batch挤出的batch */
+    public final LongAdder evictedBatches = new LongAdder();
+
+    /** 按内核 id 分别统计的任务数和计算耗时，只有出现过的内核才创建 */
+    private final AtomicReferenceArray<LongAdder[]> kernels = new AtomicReferenceArray<>(TaskKernels.MAX_KERNELS);
+    private final long[] lastKernelTasks = new long[TaskKernels.MAX_KERNELS];
+    private final long[] lastKernelNanos = new long[TaskKernels.MAX_KERNELS];
+    private final IntSupplier waitingQueueSize;
+    private final Collection<?> completionQueue;
+    private final BatchPool<?> tasksPool;
+    private long lastAllocated;
+    private long lastPoolWaits;
+    private long lastPoolWaitNanos;
+    private long lastDiscarded;
+    private long lastExpired;
+    private long lastEvicted;
+
+    public ExecutorStats(IntSupplier waitingQueueSize, Collection<?> completionQueue, BatchPool<?> tasksPool) {
+        this.waitingQueueSize = waitingQueueSize;
+        this.completionQueue = completionQueue;
+        this.tasksPool = tasksPool;
+    }
+
+    /**
+     * @Description: 工作线程在一个区间算完后调用，累加该内核的任务数和耗时
+     **/
+    public void kernel(int id, long tasks, long nanos) {
+        LongAdder[] adders = kernels.get(id);
+        if (adders == null) {
+            kernels.compareAndSet(id, null, new LongAdder[]{new LongAdder(), new LongAdder()});
+            adders = kernels.get(id);
+        }
+        adders[0].add(tasks);
+        adders[1].add(nanos);
+    }
+
+    /**
+     * @Description: 本周期各内核的任务数和平均每个任务的耗时（微秒），用于比较不同内核的吞吐，只由监控线程调用
+     **/
+    public String kernelReport() {
+        StringBuilder sb = new StringBuilder("Kernels tasks/avg us:");
+        for (int id = 0; id < TaskKernels.MAX_KERNELS; id++) {
+            LongAdder[] adders = kernels.get(id);
+            if (adders == null) {
+                continue;
+            }
+            long tasks = adders[0].sum();
+            long nanos = adders[1].sum();
+            long n = tasks - lastKernelTasks[id];
+            sb.append(' ').append(TaskKernels.name(id)).append(' ').append(n)
+                    .append('/').append(String.format("%.1f", n == 0 ? 0.0 : (nanos - lastKernelNanos[id]) / 1000.0 / n));
+            lastKernelTasks[id] = tasks;
+            lastKernelNanos[id] = nanos;
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public long getExpiredBatches() {
+        return expiredBatches.sum();
+    }
+
+    @Override
+    public long getEvictedBatches() {
+        return evictedBatches.sum();
+    }
+
+    /**
+     * @Description: 各种原因丢弃的batch总数
+     **/
+    public long getShedBatches() {
+        return discardedBatches.sum() + expiredBatches.sum() + evictedBatches.sum();
+    }
+
+    @Override
+    public String getKernelTasks() {
+        StringBuilder sb = new StringBuilder();
+        for (int id = 0; id < TaskKernels.MAX_KERNELS; id++) {
+            LongAdder[] adders = kernels.get(id);
+            if (adders != null) {
+                sb.append(sb.length() == 0 ? "" : ", ").append(TaskKernels.name(id)).append('=').append(adders[0].sum());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @Description: 注册到平台 MBeanServer，jconsole / jmc 中在 com.cw 下可以看到
+     **/
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName(DOMAIN + ",name=Stats"));
+            for (StageTimer timer : stages()) {
+                server.registerMBean(timer, new ObjectName(DOMAIN + ",stage=" + timer.getName()));
+            }
+        } catch (Exception e) {
+            log.error("JMX register: ", e);
+        }
+    }
+
+    private StageTimer[] stages() {
+        return new StageTimer[]{ingestDecode, poolWait, compute, computeCpu, dwell, write, latency};
+    }
+
+    /**
+     * @Description: 本周期各阶段 avg/max 微秒，新建的batch数、对象池达到上限的等待，以及按原因分别统计的丢弃batch数，只由监控线程调用
+     **/
+    public String intervalReport() {
+        StringBuilder sb = new StringBuilder("Stages avg/max us: ");
+        for (StageTimer timer : stages()) {
+            sb.append(timer.intervalReport()).append(", ");
+        }
+        long allocated = tasksPool.getAllocated();
+        long waits = tasksPool.getWaits();
+        long waitNanos = tasksPool.getWaitNanos();
+        long discarded = discardedBatches.sum();
+        long expired = expiredBatches.sum();
+        long evicted = evictedBatches.sum();
+        sb.append("batches allocated ").append(allocated - lastAllocated)
+                .append(" (").append(allocated).append("/").append(tasksPool.getMaxObjects()).append(")")
+                .append(", pool full waits ").append(waits - lastPoolWaits)
+                .append(" / ").append((waitNanos - lastPoolWaitNanos) / 1_000_000).append(" ms")
+                .append(", shed batches queue-full ").append(discarded - lastDiscarded)
+                .append(" expired ").append(expired - lastExpired)
+                .append(" evicted ").append(evicted - lastEvicted);
+        lastExpired = expired;
+        lastEvicted = evicted;
+        lastAllocated = allocated;
+        lastPoolWaits = waits;
+        lastPoolWaitNanos = waitNanos;
+        lastDiscarded = discarded;
+        return sb.toString();
+    }
+
+    @Override
+    public long getReceivedBatches() {
+        return receivedBatches.sum();
+    }
+
+    @Override
+    public long getCompletedBatches() {
+        return completedBatches.sum();
+    }
+
+    @Override
+    public long getAllocatedBatches() {
+        return tasksPool.getAllocated();
+    }
+
+    @Override
+    public long getPoolWaits() {
+        return tasksPool.getWaits();
+    }
+
+    @Override
+    public long getPoolWaitMillis() {
+        return tasksPool.getWaitNanos() / 1_000_000;
+    }
+
+    @Override
+    public long getDiscardedBatches() {
+        return discardedBatches.sum();
+    }
+
+    @Override
+    public int getWaitingQueueSize() {
+        return waitingQueueSize.getAsInt();
+    }
+
+    @Override
+    public int getCompletionQueueSize() {
+        return completionQueue.size();
+    }
+
+    @Override
+    public long getTasksPoolSize() {
+        return tasksPool.getIdle();
+    }
+}
@@ -0,0 +1,34 @@
+package com.cw.metrics;
+
+/**
+ * @ClassName : ExecutorStatsMBean
+ * @Description :  Executor 的计数器和队列状态的 JMX 视图
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public interface ExecutorStatsMBean {
+
+    long getReceivedBatches();
+
+    long getCompletedBatches();
+
+    long getAllocatedBatches();
+
+    long getPoolWaits();
+
+    long getPoolWaitMillis();
+
+    long getDiscardedBatches();
+
+    long getExpiredBatches();
+
+    long getEvictedBatches();
+
+    String getKernelTasks();
+
+    int getWaitingQueueSize();
+
+    int getCompletionQueueSize();
+
+    long getTasksPoolSize();
+}
@@ -0,0 +1,18 @@
+package com.cw.metrics;
+
+/**
+ * @ClassName : StageTimerMBean
+ * @Description :  单个处理阶段的 JMX 视图，数值都是启动以来的累计值
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public interface StageTimerMBean {
+
+    long getCount();
+
+    long getTotalNanos();
+
+    double getAvgMicros();
+
+    double getMaxMicros();
+}
@@ -0,0 +1,292 @@
+package com.cw.pool;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * @ClassName : BatchPool
+ * @Description :  带总数上限的 batch 对象池：每个线程一个本地空闲列表（magazine），加一个全局的无锁栈。
+ * 本地列表满了整个交给全局栈，本地列表空了从全局栈整个取一个回来，所以每 MAGAZINE_SIZE 个对象才访问一次全局栈。
+ * 全局栈是 Treiber 栈，每次 push 都是新节点，节点弹出后不再入栈，不存在 ABA 问题。
+ * 每个线程的本地列表最多滞留 MAGAZINE_SIZE - 1 个对象，归还对象的线程数（工作线程、发送线程、丢弃过期batch的接收线程）又不固定，
+ * 所以等待中的 acquire 会遍历所有线程的本地列表，把滞留的对象收回全局栈，不依赖那些线程再次调用 release。
+ * 因此本地列表带一个自旋锁：属主线程每次取还各加锁一次，平时没有竞争，只是对自己缓存行的一次 CAS；
+ * 只有等待中的线程收回对象时才会和属主竞争，持有时间只是交换一个数组。
+ * 对象总数达到上限后 acquire 登记为等待者并 park，release 在有等待者时把对象交给全局栈并 unpark 一个等待者，
+ * 被唤醒的线程取到对象后发现全局栈还有对象就继续唤醒下一个，把内存压力变成对上游的背压。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class BatchPool<T> {
+
+    private static final int MAGAZINE_SIZE = 16;
+    private static final int SPIN_TRIES = 100;
+
+    private final Supplier<T> factory;
+    private final int maxObjects;
+    private final AtomicReference<Node> top = new AtomicReference<>();
+    private final AtomicInteger allocated = new AtomicInteger();
+    /** 正在 acquire 中等待的线程数，大于0时归还的对象不再留在本地列表 */
+    private final AtomicInteger waiters = new AtomicInteger();
+    /** 等待中的线程，release 从这里取一个唤醒 */
+    private final ConcurrentLinkedQueue<Thread> waitingThreads = new ConcurrentLinkedQueue<>();
+    private final LongAdder outstanding = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    /** 所有线程的本地列表，等待时从这里收回滞留的对象；线程退出后列表里剩下的对象也能被收回 */
+    private final ConcurrentLinkedQueue<Magazine> magazines = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Magazine> local = ThreadLocal.withInitial(this::register);
+
+    private static final class Magazine extends AtomicBoolean {
+        private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+        private Object[] items = new Object[MAGAZINE_SIZE];
+        private int size;
+
+        private void lock() {
+            for (int spins = 0; !compareAndSet(false, true); spins++) {
+                // 另一方只会短暂持有；Java 8 没有 Thread.onSpinWait，自旋一会儿还拿不到就让出CPU
+                if (spins > SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+        }
+
+        private void unlock() {
+            set(false);
+        }
+
+        private boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+    }
+
+    private static final class Node {
+        private final Object[] items;
+        private final int size;
+        private Node next;
+
+        private Node(Object[] items, int size) {
+            this.items = items;
+            this.size = size;
+        }
+    }
+
+    public BatchPool(Supplier<T> factory, int maxObjects) {
+        this.factory = factory;
+        this.maxObjects = Math.max(maxObjects, 1);
+    }
+
+    private Magazine register() {
+        Magazine magazine = new Magazine();
+        magazines.add(magazine);
+        return magazine;
+    }
+
+    /**
+     * @Description: 预先创建 n 个对象放入全局栈，不超过上限
+     **/
+    public void prefill(int n) {
+        Object[] items = new Object[MAGAZINE_SIZE];
+        int size = 0;
+        for (int i = 0; i < n && allocated.get() < maxObjects; i++) {
+            allocated.incrementAndGet();
+            items[size++] = factory.get();
+            if (size == MAGAZINE_SIZE) {
+                push(new Node(items, size));
+                items = new Object[MAGAZINE_SIZE];
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            push(new Node(items, size));
+        }
+    }
+
+    /**
+     * @Description: 依次从本地列表、全局栈取对象，都没有时在上限内新建，否则等待归还
+     **/
+    public T acquire() {
+        Magazine magazine = local.get();
+        T t = poll(magazine);
+        if (t == null) {
+            t = allocate();
+        }
+        if (t == null) {
+            t = await(magazine);
+        }
+        outstanding.increment();
+        return t;
+    }
+
+    /**
+     * 先登记为等待者，之后的 release 都会把对象交给全局栈并唤醒等待者；再收回各线程本地列表中滞留的对象，还没有就 park。
+     * 登记之前已经留在本地列表中的对象由 reclaim 收回，登记之后归还的对象一定伴随一次 unpark，不会错过唤醒
+     */
+    private T await(Magazine magazine) {
+        long start = System.nanoTime();
+        Thread current = Thread.currentThread();
+        waiters.incrementAndGet();
+        waitingThreads.add(current);
+        T t;
+        try {
+            while ((t = poll(magazine)) == null) {
+                reclaim();
+                if ((t = poll(magazine)) != null) {
+                    break;
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            waitingThreads.remove(current);
+            waiters.decrementAndGet();
+        }
+        // 一次归还可能带回一整个本地列表，全局栈里还有对象时接着唤醒下一个等待者
+        if (top.get() != null) {
+            signalWaiter();
+        }
+        waits.increment();
+        waitNanos.add(System.nanoTime() - start);
+        return t;
+    }
+
+    private void signalWaiter() {
+        Thread waiter = waitingThreads.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T poll(Magazine magazine) {
+        magazine.lock();
+        try {
+            if (magazine.size == 0) {
+                Node node = pop();
+                if (node == null) {
+                    return null;
+                }
+                magazine.items = node.items;
+                magazine.size = node.size;
+            }
+            T t = (T) magazine.items[--magazine.size];
+            magazine.items[magazine.size] = null;
+            return t;
+        } finally {
+            magazine.unlock();
+        }
+    }
+
+    /**
+     * 把各线程本地列表中滞留的对象整个交给全局栈。属主正在取还的列表也要等它放锁后收回：
+     * 属主可能是在本线程登记为等待者之前看到没有等待者，把对象留在了本地列表。已经退出的线程的空列表从登记表中删除。
+     */
+    private void reclaim() {
+        for (Iterator<Magazine> it = magazines.iterator(); it.hasNext(); ) {
+            Magazine magazine = it.next();
+            magazine.lock();
+            try {
+                if (magazine.size > 0) {
+                    push(new Node(magazine.items, magazine.size));
+                    magazine.items = new Object[MAGAZINE_SIZE];
+                    magazine.size = 0;
+                } else if (!magazine.isOwnerAlive()) {
+                    it.remove();
+                }
+            } finally {
+                magazine.unlock();
+            }
+        }
+    }
+
+    private T allocate() {
+        for (; ; ) {
+            int n = allocated.get();
+            if (n >= maxObjects) {
+                return null;
+            }
+            if (allocated.compareAndSet(n, n + 1)) {
+                return factory.get();
+            }
+        }
+    }
+
+    /**
+     * @Description: 归还到本线程的本地列表，本地列表满了或有线程在等待时交给全局栈，有线程在等待时唤醒一个
+     **/
+    public void release(T t) {
+        outstanding.decrement();
+        Magazine magazine = local.get();
+        boolean waiting;
+        magazine.lock();
+        try {
+            magazine.items[magazine.size++] = t;
+            waiting = waiters.get() > 0;
+            if (magazine.size == MAGAZINE_SIZE || waiting) {
+                push(new Node(magazine.items, magazine.size));
+                magazine.items = new Object[MAGAZINE_SIZE];
+                magazine.size = 0;
+            }
+        } finally {
+            magazine.unlock();
+        }
+        if (waiting) {
+            signalWaiter();
+        }
+    }
+
+    private void push(Node node) {
+        Node head;
+        do {
+            head = top.get();
+            node.next = head;
+        } while (!top.compareAndSet(head, node));
+    }
+
+    private Node pop() {
+        Node head;
+        do {
+            head = top.get();
+            if (head == null) {
+                return null;
+            }
+        } while (!top.compareAndSet(head, head.next));
+        return head;
+    }
+
+    /**
+     * @Description: 已经创建的对象总数
+     **/
+    public int getAllocated() {
+        return allocated.get();
+    }
+
+    public int getMaxObjects() {
+        return maxObjects;
+    }
+
+    /**
+     * @Description: 空闲对象数（近似值），包括各线程本地列表中的对象
+     **/
+    public long getIdle() {
+        return allocated.get() - outstanding.sum();
+    }
+
+    /**
+     * @Description: acquire 因为达到上限而等待的次数和累计时间
+     **/
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+}
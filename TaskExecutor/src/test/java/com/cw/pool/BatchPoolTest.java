@@ -0,0 +1,141 @@
+package com.cw.pool;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @ClassName : BatchPoolTest
+ * @Description :  多个线程归还、一个线程取用时，对象滞留在其他线程的本地列表里也不能让 acquire 永远等待；
+ * 多个线程同时等待时，归还的对象要把它们都唤醒
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class BatchPoolTest {
+
+    private static final int CAP = 64;
+    private static final int RELEASERS = 8;
+
+    @Test(timeout = 10000)
+    public void acquireReclaimsObjectsStrandedInIdleThreads() throws Exception {
+        BatchPool<Object> pool = new BatchPool<>(Object::new, CAP);
+        List<Object> all = new ArrayList<>();
+        for (int i = 0; i < CAP; i++) {
+            all.add(pool.acquire());
+        }
+        // 每个线程归还不到一个本地列表的对象后就不再调用 pool，对象全部滞留在它们的本地列表里
+        CountDownLatch released = new CountDownLatch(RELEASERS);
+        CountDownLatch finish = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < RELEASERS; r++) {
+            List<Object> share = new ArrayList<>(all.subList(r * CAP / RELEASERS, (r + 1) * CAP / RELEASERS));
+            Thread thread = new Thread(() -> {
+                share.forEach(pool::release);
+                released.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        released.await();
+        assertEquals(CAP, pool.getIdle());
+
+        for (int i = 0; i < CAP; i++) {
+            assertNotNull(pool.acquire());
+        }
+        assertEquals(CAP, pool.getAllocated());
+        finish.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentReleaseAndAcquireStayWithinCap() throws Exception {
+        BatchPool<Object> pool = new BatchPool<>(Object::new, CAP);
+        int batches = 200_000;
+        List<BlockingQueue<Object>> queues = new ArrayList<>();
+        AtomicInteger done = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int r = 0; r < RELEASERS; r++) {
+            BlockingQueue<Object> queue = new ArrayBlockingQueue<>(CAP);
+            queues.add(queue);
+            Thread worker = new Thread(() -> {
+                try {
+                    for (; ; ) {
+                        Object o = queue.take();
+                        if (o == queues) {
+                            return;
+                        }
+                        pool.release(o);
+                        done.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        // 与接收线程一样，取用的线程自己也归还一部分（丢弃的batch）
+        for (int i = 0; i < batches; i++) {
+            Object o = pool.acquire();
+            if (i % 7 == 0) {
+                pool.release(o);
+                done.incrementAndGet();
+            } else {
+                queues.get(i % RELEASERS).put(o);
+            }
+        }
+        for (BlockingQueue<Object> queue : queues) {
+            queue.put(queues);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(batches, done.get());
+        assertTrue(pool.getAllocated() <= CAP);
+        assertEquals(pool.getAllocated(), pool.getIdle());
+    }
+
+    @Test(timeout = 10000)
+    public void releaseWakesEveryBlockedAcquirer() throws Exception {
+        BatchPool<Object> pool = new BatchPool<>(Object::new, CAP);
+        List<Object> all = new ArrayList<>();
+        for (int i = 0; i < CAP; i++) {
+            all.add(pool.acquire());
+        }
+        int waiters = 4;
+        CountDownLatch acquired = new CountDownLatch(waiters);
+        for (int w = 0; w < waiters; w++) {
+            Thread waiter = new Thread(() -> {
+                pool.acquire();
+                acquired.countDown();
+            });
+            waiter.setDaemon(true);
+            waiter.start();
+        }
+        assertFalse("pool is exhausted, nobody can acquire yet", acquired.await(200, TimeUnit.MILLISECONDS));
+        // 一个线程归还，所有等待者都要被唤醒，不能靠定时轮询
+        Thread releaser = new Thread(() -> all.subList(0, waiters).forEach(pool::release));
+        releaser.start();
+        releaser.join();
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        assertEquals(waiters, pool.getWaits());
+    }
+}
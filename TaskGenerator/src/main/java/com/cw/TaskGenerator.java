@@ -1,12 +1,23 @@
 package com.cw;
 
-import com.cw.utils.Utils;
+import com.cw.core.codec.TaskCodec;
+import com.cw.core.kernel.TaskKernels;
+import com.cw.core.transport.ShmOutputStream;
+import com.cw.core.transport.Transport;
+import com.cw.sender.BatchSender;
+import com.cw.core.util.Utils;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.SecureRandom;
 import java.util.Date;
 import java.util.Random;
@@ -20,6 +31,14 @@ import java.util.concurrent.atomic.LongAdder;
 /**
  * @ClassName : TaskGenerator
  * @Description :  单线程生成id，x，y任务，TCP发送给Executor，利用UDP每分钟上报生成任务个数
+ * 运行模式由 -Dgenerator.mode 指定：
+ * live   实时随机生成（默认）；
+ * record 实时生成的同时把 13 字节的任务流（id，kernel，x，y）写入文件；
+ * replay 不再调用随机数，直接用 FileChannel.transferTo 把录制文件按速率零拷贝发送给Executor，保证每次压测负载一致。
+ * 与Executor之间的链路由 -Dlink.out 指定为 tcp（默认）、resumable（断线自动续传）或 shm（同机部署时走共享内存），
+ * 只有 tcp 链路的回放是 transferTo 零拷贝，其余链路回放时直接从映射的文件拷贝。
+ * 实时生成时由独立的 I/O 线程发送（见 BatchSender），生成线程只负责往空闲缓冲区里填任务。
+ * 每个任务的计算内核按 -Dgenerator.kernel.mix 给出的权重随机选择，例如 0:90,1:5,3:5，默认全部是内核 0。
  * @Author : Ethan Chan
  * @Date: 2023/5/5 10:26
  */
@@ -28,8 +47,17 @@ public class TaskGenerator {
 
     /** Performance much faster than Random class */
     private final ThreadLocalRandom random = ThreadLocalRandom.current();
-    private static final int BATCH_SIZE = 2048;
-    private static final int GENERATOR_TASK_BYTES = 12;
+    private static final int BATCH_SIZE = TaskCodec.BATCH_SIZE;
+    private static final int GENERATOR_TASK_BYTES = TaskCodec.TASK_BYTES;
+    private static final int BATCH_BYTES = TaskCodec.TASK_BATCH_BYTES;
+    private static final String MODE = System.getProperty("generator.mode", "live");
+    private static final String RECORD_FILE = System.getProperty("generator.record.file", "tasks.rec");
+    /** 回放到文件末尾后是否从头开始，注意循环回放时id会重复 */
+    private static final boolean REPLAY_LOOP = Boolean.getBoolean("generator.replay.loop");
+    private static final Transport LINK = Transport.of("link.out");
+    private static final String KERNEL_MIX = System.getProperty("generator.kernel.mix", "0:100");
+    private static final int SEND_BUFFERS = Integer.getInteger("generator.send.buffers", 16);
+    private static final int SEND_GATHER = Integer.getInteger("generator.send.gather", 8);
     private DatagramSocket udpSocket;
     private long id;
     private LongAdder nTasksPerMin;
@@ -41,28 +69,101 @@ public class TaskGenerator {
      */
     private ByteBuffer writeBuffer;
     private int mins;
+    /** 累计生成数，随上报的序号一起发给监控系统用于对账 */
+    private long generatedTotal;
     private Socket tcpSendSocket;
+    private SocketChannel sendChannel;
+    private ShmOutputStream shmOutput;
     private InetSocketAddress monitorAddress;
     private DataOutputStream outputStream;
+    /** 非 tcp 链路的原始输出流，BatchSender 据此选择写法 */
+    private OutputStream linkOutput;
+    private FileChannel recordChannel;
+    private FileChannel replayChannel;
+    private long replayPosition;
+    private boolean replayFinished;
+    private BatchSender sender;
+    /** 按权重展开的内核 id 表，随机取一个下标即按权重选中一个内核 */
+    private byte[] kernelTable;
+    private final LongAdder[] generatedPerKernel = new LongAdder[TaskKernels.MAX_KERNELS];
+    private final long[] batchPerKernel = new long[TaskKernels.MAX_KERNELS];
+
     public TaskGenerator(String toIP, int toPort, String monitorIP, int monitorPort, long nTasksPerSecond) {
         this.nTasksPerSecond = nTasksPerSecond;
         id = 0L;
         mins = 0;
         nTasksPerMin = new LongAdder();
+        kernelTable = parseKernelMix(KERNEL_MIX);
         try {
             writeBuffer = ByteBuffer.allocate(BATCH_SIZE * GENERATOR_TASK_BYTES);
             udpSocket = new DatagramSocket();
             monitorAddress = new InetSocketAddress(monitorIP, monitorPort);
 
-            tcpSendSocket = new Socket(toIP, toPort);
-            outputStream = new DataOutputStream(tcpSendSocket.getOutputStream());
-            System.out.println("Generator Connected Executor Success");
+            if (LINK == Transport.TCP) {
+                // 阻塞模式的 SocketChannel，既可以当普通 Socket 用，又能作为 transferTo 的目标；Executor 预热完才监听，连不上时重试
+                sendChannel = Transport.connectChannel(toIP, toPort);
+                tcpSendSocket = sendChannel.socket();
+                outputStream = new DataOutputStream(tcpSendSocket.getOutputStream());
+            } else {
+                linkOutput = LINK.connect(toIP, toPort, BATCH_BYTES);
+                if (linkOutput instanceof ShmOutputStream) {
+                    shmOutput = (ShmOutputStream) linkOutput;
+                }
+                outputStream = new DataOutputStream(linkOutput);
+            }
+            if ("record".equals(MODE)) {
+                recordChannel = FileChannel.open(Paths.get(RECORD_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                System.out.println("Generator records tasks to " + RECORD_FILE);
+            } else if ("replay".equals(MODE)) {
+                replayChannel = FileChannel.open(Paths.get(RECORD_FILE), StandardOpenOption.READ);
+                System.out.println("Generator replays " + replayChannel.size() / GENERATOR_TASK_BYTES + " tasks from " + RECORD_FILE);
+            }
+            if (replayChannel == null) {
+                sender = new BatchSender(sendChannel, linkOutput, recordChannel, SEND_BUFFERS, BATCH_BYTES, SEND_GATHER);
+            }
+            System.out.println("Generator Connected Executor Success, link: " + LINK);
         } catch (IOException e) {
-            Utils.close(udpSocket, outputStream, tcpSendSocket);
+            Utils.close(udpSocket, outputStream, tcpSendSocket, recordChannel, replayChannel);
             log.error(e.toString());
         }
     }
 
+    /**
+     * @Description: 解析 id:权重,id:权重 形式的内核配比，未登记的内核 id 直接报错
+     **/
+    private byte[] parseKernelMix(String mix) {
+        int[] weights = new int[TaskKernels.MAX_KERNELS];
+        int total = 0;
+        for (String pair : mix.split(",")) {
+            String[] kv = pair.trim().split(":");
+            int id = TaskKernels.require(Integer.parseInt(kv[0].trim())).id();
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+            if (weight < 0 || total + weight > 10000) {
+                throw new IllegalArgumentException("bad kernel mix " + mix + ", weights must be non-negative and sum to at most 10000");
+            }
+            weights[id] += weight;
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("bad kernel mix " + mix);
+        }
+        byte[] table = new byte[total];
+        int n = 0;
+        StringBuilder sb = new StringBuilder();
+        for (int id = 0; id < weights.length; id++) {
+            for (int i = 0; i < weights[id]; i++) {
+                table[n++] = (byte) id;
+            }
+            if (weights[id] > 0) {
+                generatedPerKernel[id] = new LongAdder();
+                sb.append(TaskKernels.name(id)).append(' ').append(weights[id] * 100 / total).append("% ");
+            }
+        }
+        System.out.println("Generator kernel mix: " + sb.toString().trim());
+        return table;
+    }
+
     private long next() {
         return ++id;
     }
@@ -74,31 +175,89 @@ public class TaskGenerator {
     public void generateTasks() {
         for (int cnt = 0; cnt < nTasksPerSecond; cnt += BATCH_SIZE) {
             try {
+                ByteBuffer buffer = sender.acquire();
                 for (int i = 0; i < BATCH_SIZE; i++) {
                     long id = next();
+                    byte kernel = kernelTable.length == 1 ? kernelTable[0] : kernelTable[random.nextInt(kernelTable.length)];
                     int x = generateNumber();
                     int y = generateNumber();
-                    writeBuffer.putLong(id);
-                    writeBuffer.putShort((short) (x & 0xffff));  // 通过(short) (x & 0xFFFF)操作得到低16位
-                    writeBuffer.putShort((short) (y & 0xffff));
+                    TaskCodec.putTask(buffer, i, id, kernel, x, y);
+                    batchPerKernel[kernel & 0xff]++;
                 }
-                outputStream.write(writeBuffer.array());
-                outputStream.flush();
-                writeBuffer.clear();
-            } catch (Exception e) {
-                log.error("while generating:", e);
+                buffer.position(BATCH_BYTES);
+                sender.submit();
+                for (int k = 0; k < batchPerKernel.length; k++) {
+                    if (batchPerKernel[k] != 0) {
+                        generatedPerKernel[k].add(batchPerKernel[k]);
+                        batchPerKernel[k] = 0;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
             nTasksPerMin.add(BATCH_SIZE);
         }
     }
 
+    /**
+     * @Description: 每秒从录制文件中取出 nTasksPerSecond 个任务（按batch对齐），
+     * 利用 transferTo 直接从 page cache 发送到 socket，不经过用户态缓冲区，也不消耗RNG的CPU；
+     * 其他链路则把文件映射后按batch写出，共享内存链路直接从映射拷贝进环形缓冲区。
+     **/
+    public void replayTasks() {
+        if (replayFinished) {
+            return;
+        }
+        try {
+            long batches = (nTasksPerSecond + BATCH_SIZE - 1) / BATCH_SIZE;
+            long fileSize = replayChannel.size() / BATCH_BYTES * BATCH_BYTES; // 末尾不完整的batch丢弃
+            while (batches > 0) {
+                if (replayPosition >= fileSize) {
+                    if (!REPLAY_LOOP || fileSize == 0) {
+                        replayFinished = true;
+                        System.out.println("Generator replay finished at " + new Date());
+                        return;
+                    }
+                    replayPosition = 0;
+                }
+                long n = Math.min(batches * BATCH_BYTES, fileSize - replayPosition);
+                long end = replayPosition + n;
+                if (sendChannel == null) {
+                    MappedByteBuffer mapped = replayChannel.map(FileChannel.MapMode.READ_ONLY, replayPosition, n);
+                    if (shmOutput != null) {
+                        shmOutput.write(mapped);
+                    } else {
+                        while (mapped.hasRemaining()) {
+                            mapped.get(writeBuffer.array());
+                            outputStream.write(writeBuffer.array());
+                        }
+                        outputStream.flush();
+                    }
+                    replayPosition = end;
+                }
+                while (replayPosition < end) {
+                    replayPosition += replayChannel.transferTo(replayPosition, end - replayPosition, sendChannel);
+                }
+                batches -= n / BATCH_BYTES;
+                nTasksPerMin.add(n / GENERATOR_TASK_BYTES);
+            }
+        } catch (IOException e) {
+            log.error("while replaying:", e);
+        }
+    }
+
     private void monitor() {
         try {
-            int num = nTasksPerMin.intValue();
-            nTasksPerMin.reset();
+            long num = nTasksPerMin.sumThenReset();
+            generatedTotal += num;
             String msg = num + " tasks generated";
+            if (sender != null) {
+                msg += ". " + kernelReport() + ". " + sender.intervalReport();
+            }
+            String counters = "seq=" + mins + ",generated=" + generatedTotal;
             System.out.println("------- " + new Date() + "------" + this.mins++ + " mins--------------- \n" + msg);
-            byte[] datas = ("GEN@" + msg).getBytes();
+            byte[] datas = ("GEN@" + msg + "@" + counters).getBytes();
             //参数：数据，数据开始点，数据长度，发送的地址
             DatagramPacket packet = new DatagramPacket(datas, 0, datas.length, monitorAddress);
             //3.发送数据包
@@ -108,12 +267,26 @@ public class TaskGenerator {
         }
     }
 
+    private String kernelReport() {
+        StringBuilder sb = new StringBuilder("Kernels:");
+        for (int k = 0; k < generatedPerKernel.length; k++) {
+            if (generatedPerKernel[k] != null) {
+                sb.append(' ').append(TaskKernels.name(k)).append(' ').append(generatedPerKernel[k].sumThenReset());
+            }
+        }
+        return sb.toString();
+    }
+
     private void start() {
         ScheduledExecutorService monitorThread = Executors.newSingleThreadScheduledExecutor();
         monitorThread.scheduleAtFixedRate(this::monitor, 0, 60, TimeUnit.SECONDS);
         ScheduledExecutorService generateThread = Executors.newSingleThreadScheduledExecutor();
-        generateThread.scheduleAtFixedRate(this::generateTasks, 0, 1, TimeUnit.SECONDS);
-        System.out.println("Generator start to work");
+        if (replayChannel != null) {
+            generateThread.scheduleAtFixedRate(this::replayTasks, 0, 1, TimeUnit.SECONDS);
+        } else {
+            generateThread.scheduleAtFixedRate(this::generateTasks, 0, 1, TimeUnit.SECONDS);
+        }
+        System.out.println("Generator start to work, mode: " + MODE);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,201 @@
+package com.cw.sender;
+
+import com.cw.core.transport.ResumableOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @ClassName : BatchSender
+ * @Description :  生成线程和发送线程之间的多缓冲流水线：生成线程向预分配的 batch 缓冲区填任务，
+ * 独立的 I/O 线程把已填满的缓冲区发出去，随机数生成和 socket 写入互相重叠，一次慢写只会占用一个缓冲区。
+ * tcp 链路上 I/O 线程把当前积压的多个 batch 用一次 gathering write 发出；resumable 链路上这组 batch 各自成帧后同样一次 gathering write 发出；
+ * shm 等其他链路按顺序写入后统一 flush 一次。上报中的 batches per write 按实际的写调用次数计算。
+ * 上报中的 producer wait 是生成线程等空闲缓冲区的时间，buffer wait 是填好的 batch 等待 I/O 线程的时间：
+ * 前者大说明瓶颈在网络，两者都接近 0 说明瓶颈在随机数生成。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public class BatchSender {
+
+    private final SocketChannel channel;
+    private final ResumableOutputStream resumable;
+    private final OutputStream out;
+    private final FileChannel recordChannel;
+    private final int maxGather;
+    private final BlockingQueue<Batch> free;
+    private final BlockingQueue<Batch> ready;
+    private final LongAdder producerWaitNanos = new LongAdder();
+    private final LongAdder bufferWaitNanos = new LongAdder();
+    private final LongAdder sentBatches = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private long lastProducerWait;
+    private long lastBufferWait;
+    private long lastSent;
+    private long lastWrites;
+    private long lastWriteNanos;
+    private long lastReportNanos = System.nanoTime();
+    /** 生成线程正在填的缓冲区，只有一个生成线程，id 才能按顺序发送 */
+    private Batch filling;
+
+    private static class Batch {
+        private final ByteBuffer buffer;
+        private long readyNanos;
+
+        private Batch(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * @Description: channel 不为空时用 gathering write 直接写 socket，out 是 ResumableOutputStream 时成组写入帧，否则逐个写入 out；
+     * recordChannel 不为空时同时录制
+     **/
+    public BatchSender(SocketChannel channel, OutputStream out, FileChannel recordChannel, int buffers, int batchBytes, int maxGather) {
+        this.channel = channel;
+        this.resumable = out instanceof ResumableOutputStream ? (ResumableOutputStream) out : null;
+        this.out = out;
+        this.recordChannel = recordChannel;
+        this.maxGather = maxGather;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.ready = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            // 直接写 socket 时用堆外缓冲区，省去 JDK 内部再拷贝一次到临时的堆外缓冲区
+            free.add(new Batch(channel != null ? ByteBuffer.allocateDirect(batchBytes) : ByteBuffer.allocate(batchBytes)));
+        }
+        Thread writer = new Thread(this::writeLoop, "batch-sender");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @Description: 生成线程取一个空闲缓冲区，所有缓冲区都在等待发送时阻塞
+     **/
+    public ByteBuffer acquire() throws InterruptedException {
+        Batch batch = free.poll();
+        if (batch == null) {
+            long start = System.nanoTime();
+            batch = free.take();
+            producerWaitNanos.add(System.nanoTime() - start);
+        }
+        batch.buffer.clear();
+        filling = batch;
+        return batch.buffer;
+    }
+
+    /**
+     * @Description: 生成线程交出最近一次 acquire 得到的缓冲区，batch 按提交顺序发送
+     **/
+    public void submit() throws InterruptedException {
+        Batch batch = filling;
+        filling = null;
+        batch.buffer.flip();
+        batch.readyNanos = System.nanoTime();
+        ready.put(batch);
+    }
+
+    private void writeLoop() {
+        List<Batch> batches = new ArrayList<>(maxGather);
+        ByteBuffer[] gather = new ByteBuffer[maxGather];
+        try {
+            for (; ; ) {
+                batches.add(ready.take());
+                ready.drainTo(batches, maxGather - 1);
+                long start = System.nanoTime();
+                for (Batch batch : batches) {
+                    bufferWaitNanos.add(start - batch.readyNanos);
+                }
+                try {
+                    writes.add(send(batches, gather));
+                } catch (IOException e) {
+                    log.error("while sending:", e);
+                }
+                writeNanos.add(System.nanoTime() - start);
+                sentBatches.add(batches.size());
+                for (Batch batch : batches) {
+                    free.offer(batch);
+                }
+                batches.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 发出这一组 batch，返回写调用次数。缓冲区在下次 acquire 时才 clear，发送后把 position 拨回 0 给录制用，不需要 duplicate
+     */
+    private int send(List<Batch> batches, ByteBuffer[] gather) throws IOException {
+        int n = batches.size();
+        int calls = 0;
+        for (int i = 0; i < n; i++) {
+            gather[i] = batches.get(i).buffer;
+        }
+        if (channel != null) {
+            long remaining = 0;
+            for (int i = 0; i < n; i++) {
+                remaining += gather[i].remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(gather, 0, n);
+                calls++;
+            }
+            for (int i = 0; i < n; i++) {
+                gather[i].position(0);
+            }
+        } else if (resumable != null) {
+            calls = resumable.write(gather, 0, n);
+        } else {
+            for (Batch batch : batches) {
+                out.write(batch.buffer.array(), 0, batch.buffer.limit());
+            }
+            out.flush();
+            calls = n;
+        }
+        if (recordChannel != null) {
+            for (int i = 0; i < n; i++) {
+                while (gather[i].hasRemaining()) {
+                    recordChannel.write(gather[i]);
+                }
+            }
+        }
+        return calls;
+    }
+
+    /**
+     * @Description: 本周期生成线程等待、batch 排队、每次写出的 batch 数和 I/O 线程忙碌比例，只由监控线程调用
+     **/
+    public String intervalReport() {
+        long now = System.nanoTime();
+        long producerWait = producerWaitNanos.sum();
+        long bufferWait = bufferWaitNanos.sum();
+        long sent = sentBatches.sum();
+        long w = writes.sum();
+        long busy = writeNanos.sum();
+        long batches = sent - lastSent;
+        long syscalls = w - lastWrites;
+        String report = String.format("Sender: producer wait %d ms, buffer wait avg %d us, %.1f batches per write, writer busy %.0f%%",
+                (producerWait - lastProducerWait) / 1_000_000,
+                batches == 0 ? 0 : (bufferWait - lastBufferWait) / batches / 1000,
+                syscalls == 0 ? 0.0 : (double) batches / syscalls,
+                (busy - lastWriteNanos) * 100.0 / (now - lastReportNanos));
+        lastProducerWait = producerWait;
+        lastBufferWait = bufferWait;
+        lastSent = sent;
+        lastWrites = w;
+        lastWriteNanos = busy;
+        lastReportNanos = now;
+        return report;
+    }
+}
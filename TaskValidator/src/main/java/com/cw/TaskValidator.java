@@ -1,34 +1,50 @@
 package com.cw;
 
 
-import com.cw.utils.Utils;
+import com.cw.core.codec.TaskCodec;
+import com.cw.core.kernel.TaskKernel;
+import com.cw.core.kernel.TaskKernels;
+import com.cw.core.transport.Transport;
+import com.cw.store.ResultStore;
+import com.cw.core.util.Utils;
+import com.cw.core.warmup.WarmUp;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @ClassName : TaskValidator
  * @Description :  TCP接受任务，然后验证，UDP定时每分钟上报任务数量，抽样一百个的正确和错误个数。
+ * 校验时按任务的 kernel 字节调用与 Executor 相同的计算内核（见 TaskKernel），并按内核分别上报任务数。
+ * 与Executor之间的链路由 -Dlink.in 指定为 tcp（默认）、resumable 或 shm。
+ * 指定 -Dvalidator.store.dir 后，收到的结果会写入可按 id 查询的结果存储（见 ResultStoreQuery）。
+ * 启动时先用合成的结果batch预热（见 WarmUp），编译后的代码稳定后才向监控上报 READY 并开始监听。
  * @Author : Ethan Chan
  * @Date: 2023/5/5 10:24
  */
 @Slf4j
 public class TaskValidator {
     private static final int SCHEDULED_THREAD_POOL_SIZE = 1;
-    private static final int TASK_BYTES = 12 + 32;
-    private static final int BATCH_SIZE = 2048;
+    private static final int TASK_BYTES = TaskCodec.RESULT_BYTES;
+    private static final int BATCH_SIZE = TaskCodec.BATCH_SIZE;
     private static final double SAMPLE_RATE = 0.005;
+    /** 预热时每轮处理的batch数，单个batch太快，耗时容易受噪声影响 */
+    private static final int WARM_UP_BATCHES = 16;
+    private static final Transport IN_LINK = Transport.of("link.in");
+    private static final String STORE_DIR = System.getProperty("validator.store.dir");
+    private static final int STORE_SEGMENT_RECORDS = Integer.getInteger("validator.store.segment.records", 1 << 20);
+    private static final long STORE_RETENTION_MINUTES = Long.getLong("validator.store.retention.minutes", 10);
     private Random random;
     private DatagramSocket udpSocket;
-    private ServerSocket server;
-    private Socket socket;
     private int sampleCnt;
     private int rightCnt;
     private int wrongCnt;
@@ -37,6 +53,14 @@ public class TaskValidator {
     private ByteBuffer readBuffer;
     private DataInputStream inputStream;
     private final AtomicInteger totalTasksSize;
+    private long validatedTotal;
+    private long reportSeq;
+    private ResultStore resultStore;
+    /** 预热期间不打印每条抽样的校验日志 */
+    private boolean warming;
+    private final byte[] res = new byte[TaskKernel.RESULT_BYTES];
+    private final AtomicLongArray validatedPerKernel = new AtomicLongArray(TaskKernels.MAX_KERNELS);
+    private final int[] batchPerKernel = new int[TaskKernels.MAX_KERNELS];
 
     public TaskValidator(int port, String monitorIP, int monitorPort) {
         this.monitorIP = monitorIP;
@@ -48,10 +72,19 @@ public class TaskValidator {
         this.random = new Random();
         try {
             udpSocket = new DatagramSocket();
-            server = new ServerSocket(port);
-            socket = server.accept();
-            inputStream = new DataInputStream(socket.getInputStream());
             readBuffer = ByteBuffer.allocate(BATCH_SIZE * TASK_BYTES);
+            String ready = "VAL ready without warm-up";
+            if (WarmUp.ENABLED) {
+                ready = warmUp().toString();
+            }
+            // 预热完成、上报就绪后才开始监听，Executor 在此之前的连接会重试
+            Utils.send(udpSocket, monitorIP, monitorPort, "READY@" + ready);
+            inputStream = new DataInputStream(IN_LINK.accept(port, BATCH_SIZE * TASK_BYTES));
+            if (STORE_DIR != null) {
+                resultStore = ResultStore.open(Paths.get(STORE_DIR), BATCH_SIZE * TASK_BYTES,
+                        STORE_SEGMENT_RECORDS, TimeUnit.MINUTES.toMillis(STORE_RETENTION_MINUTES));
+                System.out.println("Validator stores results to " + STORE_DIR);
+            }
             System.out.println("Validator are starting!");
         } catch (IOException e) {
             log.error("TaskValidator: ", e);
@@ -59,12 +92,28 @@ public class TaskValidator {
     }
 
     private String getMonitorMsg(int totalTasksSize) {
-        return "VAL" + "@" + new Date() + " total tasks:  " + totalTasksSize + ", after sampling " + this.rightCnt + " tasks are correct while " + this.wrongCnt + " are wrong";
+        String msg = "VAL" + "@" + new Date() + " total tasks:  " + totalTasksSize + ", after sampling " + this.rightCnt + " tasks are correct while " + this.wrongCnt + " are wrong";
+        StringBuilder kernels = new StringBuilder(". Kernels:");
+        for (int k = 0; k < TaskKernels.MAX_KERNELS; k++) {
+            long n = validatedPerKernel.getAndSet(k, 0);
+            if (n != 0) {
+                kernels.append(' ').append(TaskKernels.name(k)).append(' ').append(n);
+            }
+        }
+        msg += kernels;
+        if (resultStore != null) {
+            msg += ". Result store: " + resultStore.getStored() + " stored, " + resultStore.getDropped() + " batches dropped, " + resultStore.getSegmentCount() + " segments";
+        }
+        validatedTotal += totalTasksSize;
+        return msg + "@seq=" + reportSeq++ + ",validated=" + validatedTotal;
     }
 
+    /**
+     * @Description: 收到第一个batch时才开始上报，和 Executor 相对于上游的时机一致；Executor 比 Generator 早很久连上来时，
+     * 上报序号不会比上游多出这段等待的周期。第一次上报在本线程同步发出，作为计数为 0 的基线，不会包含第一个batch
+     **/
     private void monitor() {
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(SCHEDULED_THREAD_POOL_SIZE);
-        scheduler.scheduleAtFixedRate(() -> {
+        Runnable report = () -> {
             try {
                 Utils.send(udpSocket, monitorIP, monitorPort, this.getMonitorMsg(totalTasksSize.getAndSet(0)));
                 wrongCnt = 0;
@@ -73,39 +122,100 @@ public class TaskValidator {
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-        }, 0, 60, TimeUnit.SECONDS);
+        };
+        report.run();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(SCHEDULED_THREAD_POOL_SIZE);
+        scheduler.scheduleAtFixedRate(report, 60, 60, TimeUnit.SECONDS);
     }
 
     public void receiveTasks() {
         try {
-            monitor();
+            boolean monitoring = false;
             for (; ; ) {
-                byte[] res = new byte[32];
                 inputStream.readFully(readBuffer.array());
+                if (!monitoring) {
+                    monitor();
+                    monitoring = true;
+                }
                 totalTasksSize.addAndGet(BATCH_SIZE);
-                for (int i = 0; i < BATCH_SIZE; i++) {
-                    long id = readBuffer.getLong();
-                    int x = readBuffer.getShort() & 0xffff;
-                    int y = readBuffer.getShort() & 0xffff;
-                    readBuffer.get(res);
-                    if (sampleCnt < 100 && random.nextDouble() < SAMPLE_RATE) {
-                        valTask(id, x, y, res);
-                        sampleCnt++;
-                    }
+                if (resultStore != null) {
+                    resultStore.append(readBuffer.array(), readBuffer.capacity());
                 }
-                readBuffer.clear();
+                handleBatch(readBuffer);
             }
 
         } catch (Exception e) {
             log.error("Executor: ", e);
-            Utils.close(server, socket, udpSocket);
+            Utils.close(inputStream, udpSocket, resultStore);
+        }
+    }
+
+    /**
+     * @Description: 按内核计数，并抽样校验
+     **/
+    private void handleBatch(ByteBuffer batch) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batchPerKernel[TaskCodec.resultKernel(batch, i)]++;
+            if (sampleCnt < 100 && random.nextDouble() < SAMPLE_RATE) {
+                // 只有抽中的记录才完整解码
+                TaskCodec.resultHash(batch, i, res, 0);
+                valTask(TaskCodec.resultId(batch, i), TaskCodec.resultKernel(batch, i),
+                        TaskCodec.resultX(batch, i), TaskCodec.resultY(batch, i), res);
+                sampleCnt++;
+            }
+        }
+        for (int k = 0; k < batchPerKernel.length; k++) {
+            if (batchPerKernel[k] != 0) {
+                validatedPerKernel.addAndGet(k, batchPerKernel[k]);
+                batchPerKernel[k] = 0;
+            }
         }
     }
 
-    private void valTask(long id, int x, int y, byte[] res) {
+    /**
+     * @Description: 开始监听之前，对一个合成的结果batch反复执行 handleBatch。每个batch都重置抽样数，让校验路径一直被执行；
+     * 合成的结果是真实计算出来的，预热中出现错误说明本进程的计算内核有问题。预热结束后清零所有计数。
+     * 计时的batch只用默认内核，混有其余内核的batch每轮先不计时地校验一次。
+     **/
+    private WarmUp.Result warmUp() {
+        ByteBuffer synthetic = ByteBuffer.allocate(BATCH_SIZE * TASK_BYTES);
+        ByteBuffer mixed = ByteBuffer.allocate(BATCH_SIZE * TASK_BYTES);
+        WarmUp.syntheticResults(synthetic, 0, random, false);
+        WarmUp.syntheticResults(mixed, 0, random, true);
+        warming = true;
+        WarmUp.Result result = WarmUp.run("VAL", () -> {
+            // 抽样只校验少数记录，附加的batch全部校验，其余内核的校验路径才会被编译
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                TaskCodec.resultHash(mixed, i, res, 0);
+                valTask(TaskCodec.resultId(mixed, i), TaskCodec.resultKernel(mixed, i),
+                        TaskCodec.resultX(mixed, i), TaskCodec.resultY(mixed, i), res);
+            }
+        }, () -> {
+            for (int i = 0; i < WARM_UP_BATCHES; i++) {
+                // 固定种子，每轮抽中的记录相同，各轮耗时才有可比性
+                random.setSeed(i);
+                sampleCnt = 0;
+                handleBatch(synthetic);
+            }
+        });
+        warming = false;
+        random.setSeed(System.nanoTime());
+        if (wrongCnt > 0) {
+            log.warn("Validator warm-up: {} of {} synthetic results are wrong", wrongCnt, rightCnt + wrongCnt);
+        }
+        rightCnt = 0;
+        wrongCnt = 0;
+        sampleCnt = 0;
+        for (int k = 0; k < TaskKernels.MAX_KERNELS; k++) {
+            validatedPerKernel.set(k, 0);
+        }
+        return result;
+    }
+
+    private void valTask(long id, int kernel, int x, int y, byte[] res) {
         try {
-            String s = Utils.fastPow(x, y);
-            byte[] valRes = Utils.getSha256TenTimes(s);
+            byte[] valRes = new byte[TaskKernel.RESULT_BYTES];
+            TaskKernels.require(kernel).compute(x, y, valRes, 0);
             String exeRes = Utils.getRes(res);
             String calRes = Utils.getRes(valRes);
             boolean isEquals = exeRes.equals(calRes);
@@ -114,8 +224,12 @@ public class TaskValidator {
             } else {
                 wrongCnt++;
             }
-            log.info("id {} x {} y {} sha256 {} val result {} is correct {}", id, x, y, exeRes, calRes, isEquals);
+            if (!warming) {
+                log.info("id {} kernel {} x {} y {} sha256 {} val result {} is correct {}", id, TaskKernels.name(kernel), x, y, exeRes, calRes, isEquals);
+            }
         } catch (Exception e) {
+            // 未登记的内核也算作错误
+            wrongCnt++;
             log.error("val getting sha256: ", e);
         }
     }
@@ -0,0 +1,246 @@
+package com.cw.store;
+
+import com.cw.core.codec.TaskCodec;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * @ClassName : ResultSegment
+ * @Description :  一个定长的列式段文件，整段预先映射到内存，每列连续存放：
+ * [header 64B][id 8B * cap][kernel 1B * cap][x 2B * cap][y 2B * cap][sha256 32B * cap]
+ * header: magic，capacity，count，创建时间，最后写入时间。
+ * 每 BLOCK 条记录在内存里维护一个 [minId, maxId] 稀疏索引，Executor 的batch之间是乱序的，
+ * 但batch内部id递增，所以块的范围很窄，查找时只需扫描命中块的 id 列。
+ * 单线程写，多线程读：count 是 volatile，写完数据后才发布。
+ * 其他进程以只读方式打开时，通过文件头里的 count 发布：写线程写完各列、写过 volatile 的 count 之后才更新文件头的 count，
+ * 查询前调用 refresh() 读取文件头的 count，再读一次 volatile 的 count 之后才读新增的记录并加入稀疏索引。
+ * 映射内存本身没有 volatile 语义，这依赖 HotSpot 不把普通读写跨过 volatile 读写重排（同 ShmRing）。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+class ResultSegment {
+
+    static final int BLOCK = 256;
+    private static final long MAGIC = 0x43572D5345473032L; // "CW-SEG02"，带 kernel 列
+    private static final int HEADER_BYTES = 64;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+    private static final int CREATED_OFFSET = 24;
+    private static final int LAST_WRITE_OFFSET = 32;
+
+    private final Path path;
+    private final long seq;
+    private final MappedByteBuffer mapped;
+    private final int capacity;
+    private final int idColumn;
+    private final int kernelColumn;
+    private final int xColumn;
+    private final int yColumn;
+    private final int shaColumn;
+    /** 只给写线程用的 sha256 列视图 */
+    private final ByteBuffer shaWriter;
+    private final long[] blockMin;
+    private final long[] blockMax;
+    private volatile int count;
+    private volatile long lastWriteAt;
+    private long minId = Long.MAX_VALUE;
+    private long maxId = Long.MIN_VALUE;
+
+    private ResultSegment(Path path, long seq, MappedByteBuffer mapped, int capacity) {
+        this.path = path;
+        this.seq = seq;
+        this.mapped = mapped;
+        this.capacity = capacity;
+        this.idColumn = HEADER_BYTES;
+        this.kernelColumn = idColumn + 8 * capacity;
+        this.xColumn = kernelColumn + capacity;
+        this.yColumn = xColumn + 2 * capacity;
+        this.shaColumn = yColumn + 2 * capacity;
+        this.shaWriter = mapped.duplicate();
+        int blocks = (capacity + BLOCK - 1) / BLOCK;
+        this.blockMin = new long[blocks];
+        this.blockMax = new long[blocks];
+        Arrays.fill(blockMin, Long.MAX_VALUE);
+        Arrays.fill(blockMax, Long.MIN_VALUE);
+    }
+
+    static long fileSize(int capacity) {
+        return HEADER_BYTES + (long) ResultStore.RECORD_BYTES * capacity;
+    }
+
+    static ResultSegment create(Path path, long seq, int capacity) throws IOException {
+        MappedByteBuffer mapped = map(path, fileSize(capacity), FileChannel.MapMode.READ_WRITE);
+        long now = System.currentTimeMillis();
+        mapped.putLong(CAPACITY_OFFSET, capacity);
+        mapped.putLong(COUNT_OFFSET, 0);
+        mapped.putLong(CREATED_OFFSET, now);
+        mapped.putLong(LAST_WRITE_OFFSET, now);
+        mapped.putLong(0, MAGIC);
+        ResultSegment segment = new ResultSegment(path, seq, mapped, capacity);
+        segment.lastWriteAt = now;
+        return segment;
+    }
+
+    /**
+     * @Description: 打开已有的段文件，并根据 id 列重建稀疏索引
+     **/
+    static ResultSegment open(Path path, long seq, boolean readOnly) throws IOException {
+        FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        MappedByteBuffer mapped = map(path, Files.size(path), mode);
+        if (mapped.getLong(0) != MAGIC) {
+            throw new IOException("not a result segment: " + path);
+        }
+        ResultSegment segment = new ResultSegment(path, seq, mapped, (int) mapped.getLong(CAPACITY_OFFSET));
+        segment.refresh();
+        return segment;
+    }
+
+    /**
+     * @Description: 读取文件头中的 count，把上次之后写入的记录加入稀疏索引。只读打开时每次查询前调用，写进程追加的记录随即可见
+     **/
+    synchronized void refresh() {
+        int n = (int) mapped.getLong(COUNT_OFFSET);
+        // 读 volatile 的 count 之后才读各列
+        if (n <= count) {
+            return;
+        }
+        for (int i = count; i < n; i++) {
+            index(i, mapped.getLong(idColumn + 8 * i));
+        }
+        lastWriteAt = mapped.getLong(LAST_WRITE_OFFSET);
+        count = n;
+    }
+
+    private static MappedByteBuffer map(Path path, long size, FileChannel.MapMode mode) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw")) {
+            if (mode != FileChannel.MapMode.READ_ONLY && file.length() < size) {
+                file.setLength(size);
+            }
+            return file.getChannel().map(mode, 0, size);
+        }
+    }
+
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    int remaining() {
+        return capacity - count;
+    }
+
+    /**
+     * @Description: 写线程从 batch 的当前位置解析出 n 条记录写入各列，写完后统一发布 count，batch 的 position 前移 n 条
+     **/
+    void append(ByteBuffer batch, int n) {
+        int base = count;
+        int first = batch.position() / TaskCodec.RESULT_BYTES;
+        for (int r = first, i = base; i < base + n; r++, i++) {
+            long id = TaskCodec.resultId(batch, r);
+            mapped.putLong(idColumn + 8 * i, id);
+            mapped.put(kernelColumn + i, (byte) TaskCodec.resultKernel(batch, r));
+            mapped.putShort(xColumn + 2 * i, (short) TaskCodec.resultX(batch, r));
+            mapped.putShort(yColumn + 2 * i, (short) TaskCodec.resultY(batch, r));
+            // batch 是堆内缓冲区，sha256 直接从底层数组批量写入映射
+            shaWriter.position(shaColumn + 32 * i);
+            shaWriter.put(batch.array(), TaskCodec.resultHashOffset(r), 32);
+            index(i, id);
+        }
+        batch.position(batch.position() + n * TaskCodec.RESULT_BYTES);
+        long now = System.currentTimeMillis();
+        lastWriteAt = now;
+        count = base + n;
+        // 其他进程看到新的 count 时，各列的数据必须已经写入，所以在 volatile 写之后才更新文件头
+        mapped.putLong(LAST_WRITE_OFFSET, now);
+        mapped.putLong(COUNT_OFFSET, base + n);
+    }
+
+    private void index(int i, long id) {
+        int block = i / BLOCK;
+        if (id < blockMin[block]) blockMin[block] = id;
+        if (id > blockMax[block]) blockMax[block] = id;
+        if (id < minId) minId = id;
+        if (id > maxId) maxId = id;
+    }
+
+    boolean find(long id, StoredResult out) {
+        int n = count;
+        if (n == 0 || id < minId || id > maxId) {
+            return false;
+        }
+        int blocks = (n + BLOCK - 1) / BLOCK;
+        for (int b = 0; b < blocks; b++) {
+            if (id < blockMin[b] || id > blockMax[b]) {
+                continue;
+            }
+            int end = Math.min(n, (b + 1) * BLOCK);
+            for (int i = b * BLOCK; i < end; i++) {
+                if (mapped.getLong(idColumn + 8 * i) == id) {
+                    read(i, out);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @Description: 范围扫描，段内按写入顺序输出，batch之间的先后顺序与到达顺序一致
+     **/
+    void scan(long from, long to, StoredResult reuse, Consumer<StoredResult> consumer) {
+        int n = count;
+        if (n == 0 || to < minId || from > maxId) {
+            return;
+        }
+        int blocks = (n + BLOCK - 1) / BLOCK;
+        for (int b = 0; b < blocks; b++) {
+            if (to < blockMin[b] || from > blockMax[b]) {
+                continue;
+            }
+            int end = Math.min(n, (b + 1) * BLOCK);
+            for (int i = b * BLOCK; i < end; i++) {
+                long id = mapped.getLong(idColumn + 8 * i);
+                if (id >= from && id <= to) {
+                    read(i, reuse);
+                    consumer.accept(reuse);
+                }
+            }
+        }
+    }
+
+    private void read(int i, StoredResult out) {
+        out.set(mapped.getLong(idColumn + 8 * i),
+                mapped.get(kernelColumn + i) & 0xff,
+                mapped.getShort(xColumn + 2 * i) & 0xffff,
+                mapped.getShort(yColumn + 2 * i) & 0xffff);
+        TaskCodec.getBytes(mapped, shaColumn + 32 * i, out.getSha256(), 0, 32);
+    }
+
+    long getSeq() {
+        return seq;
+    }
+
+    long getLastWriteAt() {
+        return lastWriteAt;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    boolean exists() {
+        return Files.exists(path);
+    }
+
+    void delete() throws IOException {
+        // 映射会在 GC 回收 MappedByteBuffer 时解除，Linux 下删除已映射的文件是安全的
+        Files.deleteIfExists(path);
+    }
+}
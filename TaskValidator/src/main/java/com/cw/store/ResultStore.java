@@ -0,0 +1,266 @@
+package com.cw.store;
+
+import com.cw.core.codec.TaskCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * @ClassName : ResultStore
+ * @Description :  可选的结果持久化：把验证过的 batch 追加写入内存映射的列式段文件，支持按 id 查找、范围扫描和按时间淘汰。
+ * 接收线程只做一次内存拷贝，把 batch 交给独立的写线程；写线程来不及时直接丢弃并计数，绝不阻塞 receiveTasks。
+ * 只读打开（查询工具）时，每次查询前重新扫描目录加载新的段、去掉已被淘汰的段，并刷新各段的记录数，
+ * 所以在 Validator 运行期间也能查到最新写入的结果。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+@Slf4j
+public class ResultStore implements Closeable {
+
+    public static final int RECORD_BYTES = TaskCodec.RESULT_BYTES;
+    private static final int PENDING_BATCHES = 16;
+    private static final String SUFFIX = ".seg";
+
+    private final Path dir;
+    private final int segmentRecords;
+    private final long retentionMillis;
+    private final boolean readOnly;
+    private final List<ResultSegment> segments = new CopyOnWriteArrayList<>();
+    /** 预分配的 batch 缓冲区在 free 和 pending 之间循环使用 */
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> pending;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private ScheduledExecutorService retentionThread;
+    private Thread writerThread;
+    private volatile ResultSegment current;
+    private long nextSeq;
+
+    private ResultStore(Path dir, int segmentRecords, long retentionMillis, boolean readOnly) {
+        this.dir = dir;
+        this.readOnly = readOnly;
+        this.segmentRecords = segmentRecords;
+        this.retentionMillis = retentionMillis;
+        this.free = new ArrayBlockingQueue<>(PENDING_BATCHES);
+        this.pending = new ArrayBlockingQueue<>(PENDING_BATCHES);
+    }
+
+    /**
+     * @Description: 以写模式打开，batchBytes 为每次 append 的最大字节数
+     **/
+    public static ResultStore open(Path dir, int batchBytes, int segmentRecords, long retentionMillis) throws IOException {
+        Files.createDirectories(dir);
+        ResultStore store = new ResultStore(dir, segmentRecords, retentionMillis, false);
+        store.load();
+        for (int i = 0; i < PENDING_BATCHES; i++) {
+            store.free.add(ByteBuffer.allocate(batchBytes));
+        }
+        store.writerThread = new Thread(store::writeLoop, "result-store-writer");
+        store.writerThread.setDaemon(true);
+        store.writerThread.start();
+        store.retentionThread = Executors.newSingleThreadScheduledExecutor();
+        store.retentionThread.scheduleAtFixedRate(store::applyRetention, 10, 10, TimeUnit.SECONDS);
+        return store;
+    }
+
+    /**
+     * @Description: 以只读模式打开，供查询工具在另一个进程里使用
+     **/
+    public static ResultStore openReadOnly(Path dir) throws IOException {
+        ResultStore store = new ResultStore(dir, 0, Long.MAX_VALUE, true);
+        store.load();
+        return store;
+    }
+
+    /**
+     * 加载序号不小于 nextSeq 的段文件。只读时最新的段可能刚被写进程创建、文件头还没写完，这时留到下次刷新再加载
+     */
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path path : stream) {
+                if (seqOf(path) >= nextSeq) {
+                    files.add(path);
+                }
+            }
+        }
+        files.sort(null);
+        for (int i = 0; i < files.size(); i++) {
+            Path path = files.get(i);
+            long seq = seqOf(path);
+            try {
+                segments.add(ResultSegment.open(path, seq, readOnly));
+            } catch (IOException e) {
+                if (!readOnly) {
+                    throw e;
+                }
+                if (i == files.size() - 1) {
+                    return;
+                }
+                log.warn("result store skips {}: {}", path, e.toString());
+            }
+            nextSeq = seq + 1;
+        }
+    }
+
+    private static long seqOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * 只读时查询前调用：加载新段，去掉写进程已经淘汰的段，刷新各段的记录数
+     */
+    private synchronized void refresh() {
+        if (!readOnly) {
+            return;
+        }
+        try {
+            load();
+        } catch (IOException e) {
+            log.warn("result store refresh: {}", e.toString());
+        }
+        for (ResultSegment segment : segments) {
+            if (!segment.exists()) {
+                segments.remove(segment);
+            } else {
+                segment.refresh();
+            }
+        }
+    }
+
+    /**
+     * @Description: 接收线程调用，拷贝一个 batch 后立即返回；没有空闲缓冲区时丢弃
+     **/
+    public void append(byte[] batch, int length) {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            dropped.increment();
+            return;
+        }
+        buffer.clear();
+        buffer.put(batch, 0, length);
+        buffer.flip();
+        pending.offer(buffer);
+    }
+
+    private void writeLoop() {
+        try {
+            for (; ; ) {
+                ByteBuffer buffer = pending.take();
+                try {
+                    write(buffer);
+                } catch (IOException e) {
+                    log.error("result store writing: ", e);
+                }
+                free.offer(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        int records = buffer.remaining() / RECORD_BYTES;
+        while (records > 0) {
+            if (current == null || current.isFull()) {
+                roll();
+            }
+            int n = Math.min(records, current.remaining());
+            current.append(buffer, n);
+            records -= n;
+            stored.add(n);
+        }
+    }
+
+    private void roll() throws IOException {
+        long seq = nextSeq++;
+        Path path = dir.resolve(String.format("%016d", seq) + SUFFIX);
+        current = ResultSegment.create(path, seq, segmentRecords);
+        segments.add(current);
+    }
+
+    /**
+     * @Description: 删除最后写入时间超过保留期限的段，正在写的段不删除
+     **/
+    private void applyRetention() {
+        long deadline = System.currentTimeMillis() - retentionMillis;
+        for (ResultSegment segment : segments) {
+            if (segment != current && segment.getLastWriteAt() < deadline) {
+                segments.remove(segment);
+                try {
+                    segment.delete();
+                } catch (IOException e) {
+                    log.error("result store retention: ", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @Description: 按 id 查找，从最新的段开始找，找不到返回 null
+     **/
+    public StoredResult lookup(long id) {
+        refresh();
+        StoredResult result = new StoredResult();
+        // 拷贝一份快照，不受淘汰线程并发删除的影响
+        List<ResultSegment> snapshot = new ArrayList<>(segments);
+        ListIterator<ResultSegment> it = snapshot.listIterator(snapshot.size());
+        while (it.hasPrevious()) {
+            if (it.previous().find(id, result)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @Description: 扫描 [from, to] 范围内的记录，回调中的对象会被复用
+     **/
+    public void scan(long from, long to, Consumer<StoredResult> consumer) {
+        refresh();
+        StoredResult reuse = new StoredResult();
+        for (ResultSegment segment : segments) {
+            segment.scan(from, to, reuse, consumer);
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getStored() {
+        return stored.sum();
+    }
+
+    public int getSegmentCount() {
+        refresh();
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        if (retentionThread != null) {
+            retentionThread.shutdownNow();
+        }
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.cw.store;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Scanner;
+
+/**
+ * @ClassName : ResultStoreQuery
+ * @Description :  结果存储的查询工具，只读映射 Validator 写出的段文件，可以在 Validator 运行时使用。
+ * 输入单个 id 查找一条记录，输入 from-to 做范围扫描。
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class ResultStoreQuery {
+
+    public static void main(String[] args) throws IOException {
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Please enter the result store directory, for example results");
+        ResultStore store = ResultStore.openReadOnly(Paths.get(sc.nextLine().trim()));
+        System.out.println(store.getSegmentCount() + " segments opened");
+        System.out.println("Please enter an id or a range of ids, for example 1024 or 1024-2048");
+        while (sc.hasNextLine()) {
+            String line = sc.nextLine().trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            int dash = line.indexOf('-');
+            if (dash < 0) {
+                StoredResult result = store.lookup(Long.parseLong(line));
+                System.out.println(result == null ? "id " + line + " not found" : result.toString());
+            } else {
+                long[] n = new long[1];
+                store.scan(Long.parseLong(line.substring(0, dash).trim()), Long.parseLong(line.substring(dash + 1).trim()), r -> {
+                    System.out.println(r);
+                    n[0]++;
+                });
+                System.out.println(n[0] + " records");
+            }
+            System.out.println("took " + (System.nanoTime() - start) / 1000 + " us");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.cw.store;
+
+import com.cw.core.kernel.TaskKernels;
+import com.cw.core.util.Utils;
+
+/**
+ * @ClassName : StoredResult
+ * @Description :  结果存储中的一条记录：id，kernel，x，y 以及 Executor 给出的 sha256
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class StoredResult {
+    private long id;
+    private int kernel;
+    private int x;
+    private int y;
+    private final byte[] sha256 = new byte[32];
+
+    void set(long id, int kernel, int x, int y) {
+        this.id = id;
+        this.kernel = kernel;
+        this.x = x;
+        this.y = y;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getKernel() {
+        return kernel;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public byte[] getSha256() {
+        return sha256;
+    }
+
+    @Override
+    public String toString() {
+        return "id " + id + " kernel " + TaskKernels.name(kernel) + " x " + x + " y " + y + " sha256 " + Utils.getRes(sha256);
+    }
+}
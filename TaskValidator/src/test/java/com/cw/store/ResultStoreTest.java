@@ -0,0 +1,90 @@
+package com.cw.store;
+
+import com.cw.core.codec.TaskCodec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @ClassName : ResultStoreTest
+ * @Description :  只读打开的结果存储（查询工具）能看到打开之后写入的记录和新建的段
+ * @Author : agent
+ * @Date: 2026/10/19
+ */
+public class ResultStoreTest {
+
+    private static final int SEGMENT_RECORDS = 4 * TaskCodec.BATCH_SIZE;
+
+    private Path dir;
+    private ResultStore writer;
+    private ResultStore reader;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("result-store-test");
+        writer = ResultStore.open(dir, TaskCodec.RESULT_BATCH_BYTES, SEGMENT_RECORDS, Long.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        if (reader != null) {
+            reader.close();
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test(timeout = 10000)
+    public void readOnlyStoreSeesRecordsWrittenAfterOpen() throws Exception {
+        append(0);
+        reader = ResultStore.openReadOnly(dir);
+        assertNotNull(reader.lookup(5));
+
+        // 同一个段里追加，以及写满后新建的段
+        for (int batch = 1; batch < 6; batch++) {
+            append(batch);
+        }
+        long last = 6L * TaskCodec.BATCH_SIZE - 1;
+        StoredResult result = reader.lookup(last);
+        assertNotNull(result);
+        assertEquals(last, result.getId());
+        assertEquals((int) (last % 65535) + 1, result.getX());
+        assertEquals(2, reader.getSegmentCount());
+
+        long[] n = new long[1];
+        reader.scan(TaskCodec.BATCH_SIZE, last, r -> n[0]++);
+        assertEquals(5L * TaskCodec.BATCH_SIZE, n[0]);
+    }
+
+    /**
+     * 追加一个 id 连续的 batch，并等待写线程写完
+     */
+    private void append(int batch) throws InterruptedException {
+        ByteBuffer buffer = ByteBuffer.allocate(TaskCodec.RESULT_BATCH_BYTES);
+        for (int i = 0; i < TaskCodec.BATCH_SIZE; i++) {
+            long id = (long) batch * TaskCodec.BATCH_SIZE + i;
+            TaskCodec.putResultHeader(buffer, i, id, 0, (int) (id % 65535) + 1, 1);
+        }
+        long expected = writer.getStored() + TaskCodec.BATCH_SIZE;
+        writer.append(buffer.array(), buffer.capacity());
+        while (writer.getStored() < expected) {
+            Thread.sleep(1);
+        }
+        assertTrue(writer.getDropped() == 0);
+    }
+}